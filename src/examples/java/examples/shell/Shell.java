@@ -9,7 +9,6 @@ import io.termd.core.tty.TtyEvent;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
@@ -30,9 +29,7 @@ public class Shell implements Consumer<TtyConnection> {
   private static final Pattern splitter = Pattern.compile("\\w+");
 
   public void accept(final TtyConnection conn) {
-    InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
-    Keymap keymap = new Keymap(inputrc);
-    Readline readline = new Readline(keymap);
+    Readline readline = new Readline(Keymap.getDefault());
     for (io.termd.core.readline.Function function : Helper.loadServices(Thread.currentThread().getContextClassLoader(), io.termd.core.readline.Function.class)) {
       readline.addFunction(function);
     }
@@ -17,10 +17,14 @@
 package io.termd.core.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.function.Supplier;
 import io.termd.core.io.BinaryDecoder;
 import io.termd.core.io.BinaryEncoder;
+import io.termd.core.io.CodePointConsumer;
 import io.termd.core.tty.TtyConnectionSupport;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
@@ -75,11 +79,16 @@ public abstract class HttpTtyConnection extends TtyConnectionSupport {
     this.charset = charset;
     this.size = size;
     this.eventDecoder = new TtyEventDecoder(3, 26, 4);
-    this.decoder = new BinaryDecoder(512, charset, eventDecoder);
-    this.stdout = new TtyOutputMode(new BinaryEncoder(charset, new Consumer<byte[]>() {
+    this.decoder = new BinaryDecoder(512, charset, (CodePointConsumer) eventDecoder);
+    this.stdout = new TtyOutputMode(new BinaryEncoder(charset, new Supplier<ByteBufAllocator>() {
       @Override
-      public void accept(byte[] bytes) {
-        write(bytes);
+      public ByteBufAllocator get() {
+        return alloc();
+      }
+    }, new Consumer<ByteBuf>() {
+      @Override
+      public void accept(ByteBuf buf) {
+        write(buf);
       }
     }));
   }
@@ -106,6 +115,29 @@ public abstract class HttpTtyConnection extends TtyConnectionSupport {
 
   protected abstract void write(byte[] buffer);
 
+  /**
+   * Write a buffer to the client, the ownership of the buffer is transferred to this method. The default
+   * implementation copies the buffer and calls {@link #write(byte[])}.
+   *
+   * @param buffer the buffer to write
+   */
+  protected void write(ByteBuf buffer) {
+    try {
+      byte[] bytes = new byte[buffer.readableBytes()];
+      buffer.readBytes(bytes);
+      write(bytes);
+    } finally {
+      buffer.release();
+    }
+  }
+
+  /**
+   * @return the allocator of the buffers written to this connection
+   */
+  protected ByteBufAllocator alloc() {
+    return ByteBufAllocator.DEFAULT;
+  }
+
   /**
    * Special case to handle tty events.
    *
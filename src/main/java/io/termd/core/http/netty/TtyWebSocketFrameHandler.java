@@ -17,6 +17,7 @@
 package io.termd.core.http.netty;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -26,6 +27,7 @@ import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.termd.core.function.Consumer;
 import io.termd.core.http.HttpTtyConnection;
 import io.termd.core.tty.TtyConnection;
+import io.termd.core.util.WriteBatcher;
 
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +39,7 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
   private final ChannelGroup group;
   private final Consumer<TtyConnection> handler;
   private ChannelHandlerContext context;
+  private WriteBatcher batcher;
   private HttpTtyConnection conn;
   private Class removingHandlerClass;
 
@@ -66,16 +69,45 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
         ctx.pipeline().remove(removingHandlerClass);
       }
       group.add(ctx.channel());
+      batcher = new WriteBatcher(ctx);
       conn = new HttpTtyConnection() {
         @Override
         protected void write(byte[] buffer) {
-          ByteBuf byteBuf = Unpooled.buffer();
-          byteBuf.writeBytes(buffer);
           if (context != null) {
-            context.writeAndFlush(new TextWebSocketFrame(byteBuf));
+            ByteBuf byteBuf = Unpooled.buffer();
+            byteBuf.writeBytes(buffer);
+            batcher.write(new TextWebSocketFrame(byteBuf));
           }
         }
 
+        @Override
+        protected void write(ByteBuf buffer) {
+          if (context != null) {
+            batcher.write(new TextWebSocketFrame(buffer));
+          } else {
+            buffer.release();
+          }
+        }
+
+        @Override
+        public void flush() {
+          if (context != null) {
+            batcher.flush();
+          }
+        }
+
+        @Override
+        public boolean isWritable() {
+          ChannelHandlerContext ctx = context;
+          return ctx != null && ctx.channel().isWritable();
+        }
+
+        @Override
+        protected ByteBufAllocator alloc() {
+          ChannelHandlerContext ctx = context;
+          return ctx != null ? ctx.alloc() : ByteBufAllocator.DEFAULT;
+        }
+
         @Override
         public void schedule(Runnable task, long delay, TimeUnit unit) {
           if (context != null) {
@@ -93,6 +125,7 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
         @Override
         public void close() {
           if (context != null) {
+            batcher.flush();
             context.close();
           }
         }
@@ -103,6 +136,18 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
     }
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    HttpTtyConnection tmp = conn;
+    if (tmp != null) {
+      Consumer<Boolean> writabilityHandler = tmp.getWritabilityHandler();
+      if (writabilityHandler != null) {
+        writabilityHandler.accept(ctx.channel().isWritable());
+      }
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     HttpTtyConnection tmp = conn;
@@ -17,48 +17,107 @@
 package io.termd.core.io;
 
 import io.termd.core.function.Consumer;
-import io.termd.core.util.Helper;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.IntBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
 
 /**
+ * Decodes bytes to code points.<p/>
+ *
+ * The decoder can deliver code points either as a fresh {@code int[]} per chunk via a {@link Consumer} or as
+ * slices of an internal buffer via a {@link CodePointConsumer}: the latter mode does not allocate once the
+ * decoder buffers have reached their working size.<p/>
+ *
+ * UTF-8 input is decoded directly from bytes to code points with a fast path for runs of ASCII bytes, other
+ * charsets go through a {@link CharsetDecoder}. Malformed input is replaced by {@code U+FFFD}, so is an incomplete
+ * sequence left over when the charset changes.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class BinaryDecoder {
 
   private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int REPLACEMENT = 0xFFFD;
 
   private CharsetDecoder decoder;
+  private boolean utf8;
+  private int utf8CodePoint; // The partially decoded code point
+  private int utf8Needed; // The number of continuation bytes still expected
+  private int utf8Min; // The minimum value of the partially decoded code point
   private ByteBuffer bBuf;
   private final CharBuffer cBuf;
-  private final Consumer<int[]> onChar;
+  private final int[] codePoints;
+  private final CodePointConsumer onCodePoints;
 
   public BinaryDecoder(Charset charset, Consumer<int[]> onChar) {
     this(2, charset, onChar);
   }
 
   public BinaryDecoder(int initialSize, Charset charset, Consumer<int[]> onChar) {
+    this(initialSize, charset, copying(onChar));
+  }
+
+  public BinaryDecoder(Charset charset, CodePointConsumer onCodePoints) {
+    this(2, charset, onCodePoints);
+  }
+
+  public BinaryDecoder(int initialSize, Charset charset, CodePointConsumer onCodePoints) {
     if (initialSize < 2) {
       throw new IllegalArgumentException("Initial size must be at least 2");
     }
-    decoder = charset.newDecoder();
+    setCharset(charset);
     bBuf = EMPTY;
     cBuf = CharBuffer.allocate(initialSize); // We need at least 2
-    this.onChar = onChar;
+    codePoints = new int[initialSize]; // There cannot be more code points than chars
+    this.onCodePoints = onCodePoints;
   }
 
   /**
-   * Set a new charset on the decoder.
+   * Adapts a consumer of arrays, each slice is copied to a new array since the consumer may keep it.
+   */
+  private static CodePointConsumer copying(final Consumer<int[]> onChar) {
+    return new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        onChar.accept(Arrays.copyOfRange(codePoints, offset, offset + length));
+      }
+    };
+  }
+
+  /**
+   * Set a new charset on the decoder, the input left over by the previous charset is decoded first and an
+   * incomplete sequence is replaced by {@code U+FFFD}.
    *
    * @param charset the new charset
    */
   public void setCharset(Charset charset) {
-    decoder = charset.newDecoder();
+    if (decoder != null) {
+      bBuf.flip();
+      decode(true);
+      while (decoder.flush(cBuf).isOverflow()) {
+        drain(false);
+      }
+      drain(true);
+      bBuf.clear();
+    } else if (utf8Needed > 0) {
+      utf8Needed = 0;
+      codePoints[0] = REPLACEMENT;
+      onCodePoints.accept(codePoints, 0, 1);
+    }
+    utf8 = UTF_8.equals(charset);
+    if (utf8) {
+      decoder = null;
+    } else {
+      decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
   }
 
   public void write(byte[] data) {
@@ -66,72 +125,172 @@ public class BinaryDecoder {
   }
 
   public void write(byte[] data, int start, int len) {
+    if (utf8) {
+      writeUtf8(data, start, len);
+      return;
+    }
 
-    // Fill the byte buffer
-    int remaining = bBuf.remaining();
-    if (len > remaining) {
-      // Allocate a new buffer
+    // Fill the byte buffer, growing it geometrically so it is reused by the next writes
+    if (len > bBuf.remaining()) {
       ByteBuffer tmp = bBuf;
-      int length = tmp.position() + len;
-      bBuf = ByteBuffer.allocate(length);
+      bBuf = ByteBuffer.allocate(Math.max(tmp.capacity() * 2, tmp.position() + len));
       tmp.flip();
       bBuf.put(tmp);
     }
     bBuf.put(data, start, len);
     bBuf.flip();
 
-    // Drain the byte buffer
+    decode(false);
+    bBuf.compact();
+  }
+
+  /**
+   * Decode the byte buffer with the charset decoder.
+   *
+   * @param endOfInput true when no more bytes will be decoded with the current charset
+   */
+  private void decode(boolean endOfInput) {
     while (true) {
-      IntBuffer iBuf = IntBuffer.allocate(bBuf.remaining());
-      CoderResult result = decoder.decode(bBuf, cBuf, false);
-      cBuf.flip();
-      while (cBuf.hasRemaining()) {
-        char c = cBuf.get();
-        if (isSurrogate(c)) {
-          if (Character.isHighSurrogate(c)) {
-            if (cBuf.hasRemaining()) {
-              char low = cBuf.get();
-              if (Character.isLowSurrogate(low)) {
-                int codePoint = Character.toCodePoint(c, low);
-                if (Character.isValidCodePoint(codePoint)) {
-                  iBuf.put(codePoint);
-                } else {
-                  throw new UnsupportedOperationException("Handle me gracefully");
-                }
-              } else {
-                throw new UnsupportedOperationException("Handle me gracefully");
-              }
+      CoderResult result = decoder.decode(bBuf, cBuf, endOfInput);
+      drain(false);
+      if (result.isOverflow()) {
+        // We still have work to do
+      } else if (result.isUnderflow()) {
+        // Either we need more input or we are done
+        break;
+      } else {
+        // Malformed or unmappable input that was not replaced by the decoder
+        bBuf.position(bBuf.position() + result.length());
+        codePoints[0] = REPLACEMENT;
+        onCodePoints.accept(codePoints, 0, 1);
+      }
+    }
+  }
+
+  /**
+   * Deliver the decoded chars as code points, a high surrogate at the end of the chars is kept for the next round
+   * unless {@code endOfInput} is true, it is then replaced by {@code U+FFFD}.
+   */
+  private void drain(boolean endOfInput) {
+    cBuf.flip();
+    int count = 0;
+    while (cBuf.hasRemaining()) {
+      char c = cBuf.get();
+      if (isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)) {
+          if (cBuf.hasRemaining()) {
+            char low = cBuf.get();
+            if (Character.isLowSurrogate(low)) {
+              int codePoint = Character.toCodePoint(c, low);
+              codePoints[count++] = codePoint;
             } else {
-              throw new UnsupportedOperationException("Handle me gracefully");
+              codePoints[count++] = REPLACEMENT;
+              cBuf.position(cBuf.position() - 1);
             }
+          } else if (endOfInput) {
+            codePoints[count++] = REPLACEMENT;
           } else {
-            throw new UnsupportedOperationException("Handle me gracefully");
+            // The low surrogate is not yet decoded, keep the high surrogate for the next round
+            cBuf.position(cBuf.position() - 1);
+            break;
           }
         } else {
-          iBuf.put((int) c);
+          codePoints[count++] = REPLACEMENT;
         }
+      } else {
+        codePoints[count++] = c;
       }
-      iBuf.flip();
-      int[] codePoints = new int[iBuf.limit()];
-      iBuf.get(codePoints);
-      onChar.accept(codePoints);
-      cBuf.compact();
-      if (result.isOverflow()) {
-        // We still have work to do
-      } else if (result.isUnderflow()) {
-        if (bBuf.hasRemaining()) {
-          // We need more input
-          Helper.noop();
+    }
+    if (count > 0) {
+      onCodePoints.accept(codePoints, 0, count);
+    }
+    cBuf.compact();
+  }
+
+  /**
+   * Decode UTF-8 bytes straight to code points, a multi-byte sequence split across two writes is kept in the
+   * decoder state until it is complete.
+   */
+  private void writeUtf8(byte[] data, int start, int len) {
+    int[] out = codePoints;
+    int capacity = out.length;
+    int count = 0;
+    int cp = utf8CodePoint;
+    int needed = utf8Needed;
+    int min = utf8Min;
+    int end = start + len;
+    int i = start;
+    while (i < end) {
+      if (count == capacity) {
+        onCodePoints.accept(out, 0, count);
+        count = 0;
+      }
+      int b = data[i];
+      if (needed == 0) {
+        if (b >= 0) {
+          // Fast path for a run of ASCII bytes
+          int limit = Math.min(end, i + capacity - count);
+          do {
+            out[count++] = b;
+          } while (++i < limit && (b = data[i]) >= 0);
+          continue;
+        }
+        if ((b & 0xE0) == 0xC0) {
+          if (i + 1 < end && (data[i + 1] & 0xC0) == 0x80) {
+            // Fast path for a complete 2 bytes sequence
+            cp = ((b & 0x1F) << 6) | (data[i + 1] & 0x3F);
+            out[count++] = cp < 0x80 ? REPLACEMENT : cp;
+            i += 2;
+            continue;
+          }
+          i++;
+          cp = b & 0x1F;
+          needed = 1;
+          min = 0x80;
+        } else if ((b & 0xF0) == 0xE0) {
+          if (i + 2 < end && (data[i + 1] & 0xC0) == 0x80 && (data[i + 2] & 0xC0) == 0x80) {
+            // Fast path for a complete 3 bytes sequence
+            cp = ((b & 0x0F) << 12) | ((data[i + 1] & 0x3F) << 6) | (data[i + 2] & 0x3F);
+            out[count++] = cp < 0x800 || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) ? REPLACEMENT : cp;
+            i += 3;
+            continue;
+          }
+          i++;
+          cp = b & 0x0F;
+          needed = 2;
+          min = 0x800;
+        } else if ((b & 0xF8) == 0xF0) {
+          i++;
+          cp = b & 0x07;
+          needed = 3;
+          min = 0x10000;
         } else {
-          // We are done
-          Helper.noop();
+          // Unexpected continuation byte or invalid lead byte
+          i++;
+          out[count++] = REPLACEMENT;
+        }
+      } else if ((b & 0xC0) == 0x80) {
+        i++;
+        cp = (cp << 6) | (b & 0x3F);
+        if (--needed == 0) {
+          if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+            // Overlong encoding, out of range or surrogate
+            cp = REPLACEMENT;
+          }
+          out[count++] = cp;
         }
-        break;
       } else {
-        throw new UnsupportedOperationException("Handle me gracefully");
+        // Truncated sequence, the current byte is decoded again as a lead byte
+        needed = 0;
+        out[count++] = REPLACEMENT;
       }
     }
-    bBuf.compact();
+    utf8CodePoint = cp;
+    utf8Needed = needed;
+    utf8Min = min;
+    if (count > 0) {
+      onCodePoints.accept(out, 0, count);
+    }
   }
 
   private static boolean isSurrogate(char ch) {
@@ -16,24 +16,65 @@
 
 package io.termd.core.io;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.termd.core.function.Consumer;
+import io.termd.core.function.Supplier;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
-import java.util.Arrays;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 /**
+ * Encodes code points to bytes.<p/>
+ *
+ * UTF-8 is encoded directly from the code points, other charsets use a {@link CharsetEncoder} cached per thread.
+ * Besides the {@link Consumer} contract, the code points can be encoded into a caller supplied {@code byte[]} or
+ * {@link ByteBuf}.<p/>
+ *
+ * The encoder delivers either a {@code byte[]} per write or a {@link ByteBuf} obtained from an allocator, the
+ * ownership of the buffer is transferred to the buffer consumer that must release it.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class BinaryEncoder implements Consumer<int[]> {
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final ThreadLocal<EncoderState> ENCODERS = new ThreadLocal<EncoderState>() {
+    @Override
+    protected EncoderState initialValue() {
+      return new EncoderState();
+    }
+  };
+
   private volatile Charset charset;
   final Consumer<byte[]> onByte;
+  private final Supplier<ByteBufAllocator> allocator;
+  private final Consumer<ByteBuf> onBuf;
 
   public BinaryEncoder(Charset charset, Consumer<byte[]> onByte) {
     this.charset = charset;
     this.onByte = onByte;
+    this.allocator = null;
+    this.onBuf = null;
+  }
+
+  /**
+   * Create an encoder that writes each chunk of code points in a buffer obtained from the {@code allocator}.
+   *
+   * @param charset the charset
+   * @param allocator provides the allocator of the buffers, it is called for each write
+   * @param onBuf the consumer of the encoded buffers
+   */
+  public BinaryEncoder(Charset charset, Supplier<ByteBufAllocator> allocator, Consumer<ByteBuf> onBuf) {
+    this.charset = charset;
+    this.onByte = null;
+    this.allocator = allocator;
+    this.onBuf = onBuf;
   }
 
   /**
@@ -47,22 +88,274 @@ public class BinaryEncoder implements Consumer<int[]> {
 
   @Override
   public void accept(int[] codePoints) {
-    final char[] tmp = new char[2];
-    int capacity = 0;
-    for (int codePoint : codePoints) {
-      capacity += Character.charCount(codePoint);
-    }
-    CharBuffer charBuf = CharBuffer.allocate(capacity);
-    for (int codePoint : codePoints) {
-      int size = Character.toChars(codePoint, tmp, 0);
-      charBuf.put(tmp, 0, size);
-    }
-    charBuf.flip();
-    ByteBuffer bytesBuf = charset.encode(charBuf);
-    byte[] bytes = bytesBuf.array();
-    if (bytesBuf.limit() < bytesBuf.array().length) {
-      bytes = Arrays.copyOf(bytes, bytesBuf.limit());
-    }
-    onByte.accept(bytes);
+    if (onBuf != null) {
+      if (codePoints.length > 0) {
+        onBuf.accept(encode(codePoints, 0, codePoints.length, allocator.get()));
+      }
+    } else {
+      onByte.accept(encode(codePoints, 0, codePoints.length));
+    }
+  }
+
+  /**
+   * Encode code points to a new buffer.
+   *
+   * @param codePoints the code points
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   * @param allocator the allocator of the buffer
+   * @return the buffer containing the encoded bytes
+   */
+  public ByteBuf encode(int[] codePoints, int offset, int length, ByteBufAllocator allocator) {
+    Charset cs = charset;
+    ByteBuf buf;
+    if (UTF_8.equals(cs)) {
+      int size = utf8Length(codePoints, offset, length);
+      buf = allocator.buffer(size);
+      writeUtf8(codePoints, offset, length, buf, size);
+    } else {
+      ByteBuffer encoded = encodeWithEncoder(cs, codePoints, offset, length);
+      buf = allocator.buffer(encoded.remaining());
+      buf.writeBytes(encoded);
+    }
+    return buf;
+  }
+
+  /**
+   * Encode code points to a new array of the exact encoded size.
+   *
+   * @param codePoints the code points
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   * @return the encoded bytes
+   */
+  public byte[] encode(int[] codePoints, int offset, int length) {
+    Charset cs = charset;
+    if (UTF_8.equals(cs)) {
+      byte[] bytes = new byte[utf8Length(codePoints, offset, length)];
+      encodeUtf8(codePoints, offset, length, bytes, 0);
+      return bytes;
+    } else {
+      ByteBuffer buf = encodeWithEncoder(cs, codePoints, offset, length);
+      byte[] bytes = new byte[buf.remaining()];
+      buf.get(bytes);
+      return bytes;
+    }
+  }
+
+  /**
+   * Encode code points into a caller supplied array.
+   *
+   * @param codePoints the code points
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   * @param dst the destination array
+   * @param dstOffset the offset in the destination array
+   * @return the number of bytes written
+   * @throws IndexOutOfBoundsException when the destination array is too small
+   */
+  public int encode(int[] codePoints, int offset, int length, byte[] dst, int dstOffset) {
+    Charset cs = charset;
+    if (UTF_8.equals(cs)) {
+      int size = utf8Length(codePoints, offset, length);
+      if (dstOffset + size > dst.length) {
+        throw new IndexOutOfBoundsException("Destination too small: " + (dst.length - dstOffset) + " < " + size);
+      }
+      return encodeUtf8(codePoints, offset, length, dst, dstOffset);
+    } else {
+      ByteBuffer buf = encodeWithEncoder(cs, codePoints, offset, length);
+      int size = buf.remaining();
+      if (dstOffset + size > dst.length) {
+        throw new IndexOutOfBoundsException("Destination too small: " + (dst.length - dstOffset) + " < " + size);
+      }
+      buf.get(dst, dstOffset, size);
+      return size;
+    }
+  }
+
+  /**
+   * Encode code points into a buffer, the buffer is expanded when needed.
+   *
+   * @param codePoints the code points
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   * @param dst the destination buffer
+   */
+  public void encode(int[] codePoints, int offset, int length, ByteBuf dst) {
+    Charset cs = charset;
+    if (UTF_8.equals(cs)) {
+      writeUtf8(codePoints, offset, length, dst, utf8Length(codePoints, offset, length));
+    } else {
+      dst.writeBytes(encodeWithEncoder(cs, codePoints, offset, length));
+    }
+  }
+
+  /**
+   * Compute the size of code points encoded in UTF-8.
+   *
+   * @param codePoints the code points
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   * @return the size in bytes
+   */
+  public static int utf8Length(int[] codePoints, int offset, int length) {
+    int size = length;
+    for (int i = offset;i < offset + length;i++) {
+      int cp = codePoints[i];
+      if (cp >= 0x80) {
+        if (cp < 0x800) {
+          size += 1;
+        } else if (cp < 0x10000) {
+          if (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE) {
+            size += 2;
+          }
+        } else if (cp <= Character.MAX_CODE_POINT) {
+          size += 3;
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Encode in UTF-8, unpaired surrogates and invalid code points are replaced by {@code ?} like the
+   * {@code UTF-8} charset does.
+   */
+  private static int encodeUtf8(int[] codePoints, int offset, int length, byte[] dst, int dstOffset) {
+    int pos = dstOffset;
+    for (int i = offset;i < offset + length;i++) {
+      int cp = codePoints[i];
+      if (cp >= 0 && cp < 0x80) {
+        dst[pos++] = (byte) cp;
+      } else if (cp >= 0x80 && cp < 0x800) {
+        dst[pos++] = (byte) (0xC0 | (cp >> 6));
+        dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (cp >= 0x800 && cp < 0x10000 && (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE)) {
+        dst[pos++] = (byte) (0xE0 | (cp >> 12));
+        dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (cp >= 0x10000 && cp <= Character.MAX_CODE_POINT) {
+        dst[pos++] = (byte) (0xF0 | (cp >> 18));
+        dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else {
+        dst[pos++] = '?';
+      }
+    }
+    return pos - dstOffset;
+  }
+
+  private static void writeUtf8(int[] codePoints, int offset, int length, ByteBuf dst, int size) {
+    dst.ensureWritable(size);
+    int index = dst.writerIndex();
+    if (dst.hasArray()) {
+      encodeUtf8(codePoints, offset, length, dst.array(), dst.arrayOffset() + index);
+    } else {
+      for (int i = offset;i < offset + length;i++) {
+        index = setUtf8(dst, index, codePoints[i]);
+      }
+    }
+    dst.writerIndex(dst.writerIndex() + size);
+  }
+
+  private static int setUtf8(ByteBuf dst, int index, int cp) {
+    if (cp >= 0 && cp < 0x80) {
+      dst.setByte(index++, cp);
+    } else if (cp >= 0x80 && cp < 0x800) {
+      dst.setByte(index++, 0xC0 | (cp >> 6));
+      dst.setByte(index++, 0x80 | (cp & 0x3F));
+    } else if (cp >= 0x800 && cp < 0x10000 && (cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE)) {
+      dst.setByte(index++, 0xE0 | (cp >> 12));
+      dst.setByte(index++, 0x80 | ((cp >> 6) & 0x3F));
+      dst.setByte(index++, 0x80 | (cp & 0x3F));
+    } else if (cp >= 0x10000 && cp <= Character.MAX_CODE_POINT) {
+      dst.setByte(index++, 0xF0 | (cp >> 18));
+      dst.setByte(index++, 0x80 | ((cp >> 12) & 0x3F));
+      dst.setByte(index++, 0x80 | ((cp >> 6) & 0x3F));
+      dst.setByte(index++, 0x80 | (cp & 0x3F));
+    } else {
+      dst.setByte(index++, '?');
+    }
+    return index;
+  }
+
+  /**
+   * Encode with the {@link CharsetEncoder} of the current thread.
+   *
+   * @return the encoded bytes, only valid until the next encoding on the current thread
+   */
+  private static ByteBuffer encodeWithEncoder(Charset cs, int[] codePoints, int offset, int length) {
+    EncoderState state = ENCODERS.get();
+    CharsetEncoder encoder = state.encoder(cs);
+    CharBuffer chars = state.chars(length * 2);
+    for (int i = offset;i < offset + length;i++) {
+      int cp = codePoints[i];
+      if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        chars.put((char) cp);
+      } else {
+        int size = Character.toChars(cp, state.tmp, 0);
+        chars.put(state.tmp, 0, size);
+      }
+    }
+    chars.flip();
+    ByteBuffer bytes = state.bytes((int) (chars.remaining() * encoder.averageBytesPerChar()) + 1);
+    encoder.reset();
+    CoderResult result = encoder.encode(chars, bytes, true);
+    while (result.isOverflow()) {
+      bytes = state.grow();
+      result = encoder.encode(chars, bytes, true);
+    }
+    result = encoder.flush(bytes);
+    while (result.isOverflow()) {
+      bytes = state.grow();
+      result = encoder.flush(bytes);
+    }
+    bytes.flip();
+    return bytes;
+  }
+
+  /**
+   * The per thread encoding state.
+   */
+  private static class EncoderState {
+
+    private final char[] tmp = new char[2];
+    private CharsetEncoder encoder;
+    private CharBuffer chars = CharBuffer.allocate(256);
+    private ByteBuffer bytes = ByteBuffer.allocate(256);
+
+    CharsetEncoder encoder(Charset charset) {
+      if (encoder == null || !encoder.charset().equals(charset)) {
+        encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }
+      return encoder;
+    }
+
+    CharBuffer chars(int capacity) {
+      if (chars.capacity() < capacity) {
+        chars = CharBuffer.allocate(Math.max(capacity, chars.capacity() * 2));
+      }
+      chars.clear();
+      return chars;
+    }
+
+    ByteBuffer bytes(int capacity) {
+      if (bytes.capacity() < capacity) {
+        bytes = ByteBuffer.allocate(Math.max(capacity, bytes.capacity() * 2));
+      }
+      bytes.clear();
+      return bytes;
+    }
+
+    ByteBuffer grow() {
+      ByteBuffer tmp = ByteBuffer.allocate(bytes.capacity() * 2);
+      bytes.flip();
+      tmp.put(bytes);
+      bytes = tmp;
+      return bytes;
+    }
   }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.io;
+
+/**
+ * Receives a slice of code points.<p/>
+ *
+ * The array is owned by the producer and is usually reused for the next call, so an implementation must
+ * copy the slice if it needs to keep it after {@link #accept(int[], int, int)} returns.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public interface CodePointConsumer {
+
+  /**
+   * Consume the code points in the range {@literal [offset,offset + length[} of the {@code codePoints} array.
+   *
+   * @param codePoints the code points array
+   * @param offset the offset of the first code point
+   * @param length the number of code points
+   */
+  void accept(int[] codePoints, int offset, int length);
+
+}
@@ -45,6 +45,8 @@ public class PtyMaster extends Thread {
   private Status status;
   private Process process;
   private boolean interrupted;
+  private boolean readPaused;
+  private final Object lock = new Object();
 
   public PtyMaster(String line, Consumer<int[]> stdout, Consumer<Void> doneHandler) {
     this.line = line;
@@ -64,6 +66,34 @@ public class PtyMaster extends Thread {
     this.bufferSize = bufferSize;
   }
 
+  public boolean isReadPaused() {
+    synchronized (lock) {
+      return readPaused;
+    }
+  }
+
+  /**
+   * Stop or resume reading the process output, the process blocks when its output buffer is full.
+   *
+   * @param paused true to stop reading, false to resume
+   */
+  public void setReadPaused(boolean paused) {
+    synchronized (lock) {
+      readPaused = paused;
+      if (!paused) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void awaitReadResumed() throws InterruptedException {
+    synchronized (lock) {
+      while (readPaused && !interrupted) {
+        lock.wait();
+      }
+    }
+  }
+
   public BiConsumer<Status, Status> getChangeHandler() {
     return changeHandler;
   }
@@ -92,6 +122,7 @@ public class PtyMaster extends Thread {
       byte[] buffer = new byte[512];
       while (true) {
         try {
+          awaitReadResumed();
           int l = in.read(buffer);
           if (l == -1) {
             break;
@@ -100,6 +131,9 @@ public class PtyMaster extends Thread {
         } catch (IOException e) {
           e.printStackTrace();
           break; //break endless loop. "IOException: Stream closed" can be thrown when process is destroyed https://bugs.openjdk.java.net/browse/JDK-5101298
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
         }
       }
     }
@@ -114,9 +148,12 @@ public class PtyMaster extends Thread {
   }
 
   public void interruptProcess() {
-    if (!interrupted) {
-      interrupted = true;
-      process.destroy();
+    synchronized (lock) {
+      if (!interrupted) {
+        interrupted = true;
+        process.destroy();
+        lock.notifyAll();
+      }
     }
   }
 
@@ -26,7 +26,7 @@ import io.termd.core.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -71,9 +71,7 @@ public class TtyBridge {
   }
 
   public TtyBridge readline() {
-    InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
-    Keymap keymap = new Keymap(inputrc);
-    Readline readline = new Readline(keymap);
+    Readline readline = new Readline(Keymap.getDefault());
     for (io.termd.core.readline.Function function : Helper.loadServices(Thread.currentThread().getContextClassLoader(), io.termd.core.readline.Function.class)) {
       log.trace("Server is adding function to readline: {}", function);
 
@@ -91,6 +89,50 @@ public class TtyBridge {
     return this;
   }
 
+  /**
+   * Forwards the process output to the connection and stops reading the process output when the connection
+   * is not writable or when too many writes are waiting for execution.
+   */
+  private static class ProcessStdout implements Consumer<int[]> {
+
+    private static final int MAX_PENDING_WRITES = 16;
+
+    private final TtyConnection conn;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private volatile PtyMaster task;
+    private final Consumer<Boolean> writabilityHandler = new Consumer<Boolean>() {
+      @Override
+      public void accept(Boolean writable) {
+        update();
+      }
+    };
+
+    ProcessStdout(TtyConnection conn) {
+      this.conn = conn;
+    }
+
+    @Override
+    public void accept(final int[] buffer) {
+      pendingWrites.incrementAndGet();
+      update();
+      conn.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            conn.stdoutHandler().accept(buffer);
+          } finally {
+            pendingWrites.decrementAndGet();
+            update();
+          }
+        }
+      });
+    }
+
+    synchronized void update() {
+      task.setReadPaused(!conn.isWritable() || pendingWrites.get() >= MAX_PENDING_WRITES);
+    }
+  }
+
   void read(final TtyConnection conn, final Readline readline) {
     readline.readline(conn, "% ", new Consumer<String>() {
       @Override
@@ -104,22 +146,14 @@ public class TtyBridge {
           return;
         }
 
+        final ProcessStdout stdout = new ProcessStdout(conn);
         final PtyMaster task = new PtyMaster(line,
-                new Consumer<int[]>() {
-                  @Override
-                  public void accept(final int[] buffer) {
-                    conn.execute(new Runnable() {
-                      @Override
-                      public void run() {
-                        conn.stdoutHandler().accept(buffer);
-                      }
-                    });
-                  }
-                },
+                stdout,
                 new Consumer<Void>() {
                   @Override
                   public void accept(Void v) {
                     conn.setEventHandler(null);
+                    conn.setWritabilityHandler(null);
                     conn.execute(new Runnable() {
                       @Override
                       public void run() {
@@ -137,6 +171,10 @@ public class TtyBridge {
           }
         });
 
+        stdout.task = task;
+        conn.setWritabilityHandler(stdout.writabilityHandler);
+        stdout.update();
+
         if (processListener != null) {
           processListener.accept(task);
         }
@@ -16,14 +16,23 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * An object for asynchronous completion.
+ * An object for asynchronous completion.<p/>
+ *
+ * The candidates can also be streamed with {@link #addCandidate(int[])} as they are found and then ended with
+ * {@link #endCandidates()}, the longest common prefix of the candidates is computed as they arrive and the user
+ * is asked to confirm the display of more than {@link #getDisplayLimit()} candidates. A completion with a cancel
+ * handler is cancelled
+ * when the user types while it is pending, the typed keys are then handled as usual.
  *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
@@ -33,10 +42,31 @@ public class Completion {
     return Helper.findLongestCommonPrefix(entries);
   }
 
+  /**
+   * The default max number of candidates displayed without confirmation.
+   */
+  public static final int DEFAULT_DISPLAY_LIMIT = 100;
+
   private AtomicBoolean done = new AtomicBoolean();
   private final Readline.Interaction interaction;
   private final int[] line;
   private final int[] prefix;
+  private final int[] head;
+  private final int wordLength;
+  private volatile Consumer<Void> cancelHandler;
+  private volatile boolean cancelled;
+
+  // The streamed candidates
+  private int displayLimit = DEFAULT_DISPLAY_LIMIT;
+  private final List<int[]> candidates = new ArrayList<int[]>();
+  private int candidateCount;
+  private int[] commonPrefix;
+  private int commonPrefixLength;
+
+  // All the streamed candidates recorded for a cache, null when they are not recorded or exceed the record limit
+  private List<int[]> recorded;
+  private int recordLimit;
+  private Consumer<List<int[]>> recordHandler;
 
   public Completion(Readline.Interaction interaction) {
 
@@ -57,6 +87,13 @@ public class Completion {
     this.interaction = interaction;
     this.prefix = prefix.toArray();
     this.line = interaction.line().copy().insert(interaction.buffer().toArray()).toArray();
+    LineBuffer head = interaction.line().copy();
+    for (int i = 0; i < interaction.buffer().getCursor();i++) {
+      head.insert(interaction.buffer().getAt(i));
+    }
+    this.head = head.toArray();
+    this.wordLength = interaction.buffer().getCursor() - index;
+    interaction.completion = this;
   }
 
   /**
@@ -88,9 +125,10 @@ public class Completion {
    * @param terminal true if an extra whitespace must be inserted after the text
    */
   public void complete(int[] text, boolean terminal) {
-    if (!done.compareAndSet(false, true)) {
-      throw new IllegalStateException();
+    if (!finish()) {
+      return;
     }
+    interaction.completion = null;
     if (text.length > 0 || terminal) {
       LineBuffer work = interaction.buffer().copy();
       LineStatus.Ext toto = work.insertEscaped(text); // Todo improve that
@@ -132,9 +170,10 @@ public class Completion {
    * @param text the text to insert inline
    */
   public void suggest(int[] text) {
-    if (!done.compareAndSet(false, true)) {
-      throw new IllegalStateException();
+    if (!finish()) {
+      return;
     }
+    interaction.completion = null;
     interaction.conn.write("\n");
     interaction.conn.stdoutHandler().accept(text);
     interaction.redraw();
@@ -166,4 +205,230 @@ public class Completion {
     suggest(Helper.computeBlock(size(), candidates));
   }
 
+
+  /**
+   * Set a handler called when the completion is cancelled because the user typed while it was pending, the
+   * completion is cancellable only when it has a cancel handler. The result of a cancelled completion is ignored.
+   *
+   * @param handler the cancel handler
+   * @return this completion
+   */
+  public Completion setCancelHandler(Consumer<Void> handler) {
+    cancelHandler = handler;
+    return this;
+  }
+
+  /**
+   * @return true when the completion has been cancelled
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  boolean isCancellable() {
+    return cancelHandler != null && !done.get();
+  }
+
+  /**
+   * Cancel the completion and resume the interaction.
+   *
+   * @return true if the completion was cancelled
+   */
+  boolean cancel() {
+    synchronized (this) {
+      if (!done.compareAndSet(false, true)) {
+        return false;
+      }
+      cancelled = true;
+    }
+    interaction.completion = null;
+    Consumer<Void> handler = cancelHandler;
+    if (handler != null) {
+      handler.accept(null);
+    }
+    interaction.resume();
+    return true;
+  }
+
+  /**
+   * Mark the completion as done, the cancellation is observed atomically with the done flag.
+   *
+   * @return false when the completion has been cancelled and its result must be ignored
+   */
+  private synchronized boolean finish() {
+    if (!done.compareAndSet(false, true)) {
+      if (cancelled) {
+        return false;
+      }
+      throw new IllegalStateException();
+    }
+    return true;
+  }
+
+  /**
+   * @return the max number of candidates displayed without confirmation
+   */
+  public synchronized int getDisplayLimit() {
+    return displayLimit;
+  }
+
+  /**
+   * Set the max number of candidates displayed without confirmation, beyond the limit the user is asked whether
+   * to display all of them.
+   *
+   * @param limit the limit
+   * @return this completion
+   */
+  public synchronized Completion setDisplayLimit(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Invalid limit " + limit);
+    }
+    displayLimit = limit;
+    return this;
+  }
+
+  /**
+   * Add a candidate, a candidate is a full word completing the word before the cursor.
+   *
+   * @param candidate the candidate
+   * @return false when the completion is cancelled or ended and the candidate is ignored
+   */
+  public synchronized boolean addCandidate(int[] candidate) {
+    if (done.get()) {
+      return false;
+    }
+    if (candidateCount++ == 0) {
+      commonPrefix = candidate;
+      commonPrefixLength = candidate.length;
+    } else {
+      int length = Math.min(commonPrefixLength, candidate.length);
+      int i = 0;
+      while (i < length && commonPrefix[i] == candidate[i]) {
+        i++;
+      }
+      commonPrefixLength = i;
+    }
+    candidates.add(candidate);
+    if (recorded != null) {
+      if (recorded.size() < recordLimit) {
+        recorded.add(candidate);
+      } else {
+        recorded = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of added candidates
+   */
+  public synchronized int getCandidateCount() {
+    return candidateCount;
+  }
+
+  /**
+   * @return the longest common prefix of the added candidates
+   */
+  public synchronized int[] getCommonPrefix() {
+    return candidateCount == 0 ? new int[0] : Arrays.copyOf(commonPrefix, commonPrefixLength);
+  }
+
+  /**
+   * End the added candidates: a single candidate completes the word, the common prefix of several candidates
+   * extends the word when it is longer and otherwise the candidates are displayed below the edition line, the
+   * user confirms the display when there are more than {@link #getDisplayLimit()} candidates.
+   * Nothing happens when the completion has been cancelled.
+   */
+  public void endCandidates() {
+    int[] inline = null;
+    boolean terminal = false;
+    int[] block = null;
+    boolean ask = false;
+    List<int[]> all;
+    synchronized (this) {
+      if (cancelled) {
+        return;
+      }
+      all = recorded;
+      if (candidateCount == 1 || commonPrefixLength > wordLength) {
+        inline = Arrays.copyOfRange(commonPrefix, Math.min(wordLength, commonPrefixLength), commonPrefixLength);
+        terminal = candidateCount == 1;
+      } else if (candidateCount > displayLimit) {
+        ask = true;
+      } else if (candidateCount > 1) {
+        block = Helper.computeBlock(size(), candidates);
+      }
+    }
+    if (ask) {
+      if (finish()) {
+        interaction.completion = null;
+        interaction.query = this;
+        interaction.conn.write("\nDisplay all " + candidateCount + " possibilities? (y or n)");
+        interaction.resume();
+      }
+    } else if (block != null) {
+      suggest(block);
+    } else if (inline != null) {
+      complete(inline, terminal);
+    } else {
+      end();
+    }
+    if (all != null) {
+      recordHandler.accept(all);
+    }
+  }
+
+  /**
+   * Answer the query asking to display the candidates: {@literal y} or space displays them, {@literal n},
+   * {@literal Ctrl-G} or the rubout keys do not and any other key rings the bell.
+   */
+  void answer(int codePoint) {
+    switch (codePoint) {
+      case 'y':
+      case 'Y':
+      case ' ':
+        interaction.query = null;
+        interaction.conn.write("\n");
+        interaction.conn.stdoutHandler().accept(Helper.computeBlock(size(), candidates));
+        interaction.redraw();
+        break;
+      case 'n':
+      case 'N':
+      case 7:
+      case 8:
+      case 127:
+        interaction.query = null;
+        interaction.conn.write("\n");
+        interaction.redraw();
+        break;
+      default:
+        interaction.conn.stdoutHandler().accept(new int[]{'\007'});
+        break;
+    }
+  }
+
+  /**
+   * @return the length of the word before the cursor, it is the end of the {@link #prefix()} and of the
+   *         {@link #head()}
+   */
+  int wordLength() {
+    return wordLength;
+  }
+
+  /**
+   * @return the text before the cursor: the previous lines followed by the current line up to the cursor
+   */
+  int[] head() {
+    return head;
+  }
+
+  /**
+   * Record the streamed candidates, the handler is called with all of them when the candidates end unless the
+   * completion is cancelled or more than {@code limit} candidates are added.
+   */
+  synchronized void record(int limit, Consumer<List<int[]>> handler) {
+    recorded = new ArrayList<int[]>();
+    recordLimit = limit;
+    recordHandler = handler;
+  }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.function.Consumer;
+import io.termd.core.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A completion handler caching the candidates streamed by another completion handler.<p/>
+ *
+ * The candidates of a completion are remembered with the text before the cursor when the delegate handler ends
+ * them with {@link Completion#endCandidates()}, so the candidates of a word depend on the whole text preceding it.
+ * A completion whose text is identical to a cached text up to the start of the word and extends its word with
+ * more chars is completed by filtering the cached candidates and the delegate is not called. The cache keeps a
+ * bounded number of texts, the least recently used is discarded first, and a completion with too many candidates
+ * is not cached. The cache must be invalidated when the candidates of the delegate change.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class CompletionCache implements Consumer<Completion> {
+
+  /**
+   * The default max number of cached texts.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 16;
+
+  /**
+   * The default max number of candidates of a cached text.
+   */
+  public static final int DEFAULT_MAX_CANDIDATES = 10000;
+
+  private static class Entry {
+
+    final int[] text;
+    final int wordStart;
+    final List<int[]> candidates;
+
+    Entry(int[] text, int wordStart, List<int[]> candidates) {
+      this.text = text;
+      this.wordStart = wordStart;
+      this.candidates = candidates;
+    }
+  }
+
+  /**
+   * The entries in access order, the least recently used is discarded when there are more than the max entries.
+   */
+  private static class Entries extends LinkedHashMap<String, Entry> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+
+    Entries(int maxEntries) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxEntries;
+    }
+  }
+
+  private final Consumer<Completion> delegate;
+  private final int maxEntries;
+  private final int maxCandidates;
+  private final Entries entries;
+
+  public CompletionCache(Consumer<Completion> delegate) {
+    this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CANDIDATES);
+  }
+
+  public CompletionCache(Consumer<Completion> delegate, int maxEntries, int maxCandidates) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Invalid max entries " + maxEntries);
+    }
+    this.delegate = delegate;
+    this.maxEntries = maxEntries;
+    this.maxCandidates = maxCandidates;
+    this.entries = new Entries(maxEntries);
+  }
+
+  /**
+   * @return the max number of cached texts
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @return the number of cached texts
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Discard all the cached candidates.
+   */
+  public synchronized void invalidate() {
+    entries.clear();
+  }
+
+  @Override
+  public void accept(Completion completion) {
+    final int[] text = completion.head();
+    final int wordStart = text.length - completion.wordLength();
+    List<int[]> candidates = lookup(text, wordStart);
+    if (candidates != null) {
+      for (int[] candidate : candidates) {
+        completion.addCandidate(candidate);
+      }
+      completion.endCandidates();
+    } else {
+      completion.record(maxCandidates, new Consumer<List<int[]>>() {
+        @Override
+        public void accept(List<int[]> candidates) {
+          put(text, wordStart, candidates);
+        }
+      });
+      delegate.accept(completion);
+    }
+  }
+
+  /**
+   * Find the candidates of the text before the cursor, the candidates of the longest cached text identical up
+   * to the start of the word are filtered and cached for the text.
+   *
+   * @return the candidates or {@code null}
+   */
+  private synchronized List<int[]> lookup(int[] text, int wordStart) {
+    String key = Helper.fromCodePoints(text);
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      return entry.candidates;
+    }
+    Entry best = null;
+    for (Entry e : entries.values()) {
+      if (e.wordStart == wordStart && e.text.length < text.length && startsWith(text, e.text)
+          && (best == null || e.text.length > best.text.length)) {
+        best = e;
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    // Refresh the access order of the narrowed entry
+    entries.get(Helper.fromCodePoints(best.text));
+    int[] word = Arrays.copyOfRange(text, wordStart, text.length);
+    List<int[]> candidates = new ArrayList<int[]>();
+    for (int[] candidate : best.candidates) {
+      if (startsWith(candidate, word)) {
+        candidates.add(candidate);
+      }
+    }
+    entries.put(key, new Entry(text, wordStart, candidates));
+    return candidates;
+  }
+
+  private synchronized void put(int[] text, int wordStart, List<int[]> candidates) {
+    entries.put(Helper.fromCodePoints(text), new Entry(text, wordStart, candidates));
+  }
+
+  private static boolean startsWith(int[] codePoints, int[] prefix) {
+    if (codePoints.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0;i < prefix.length;i++) {
+      if (codePoints[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -17,26 +17,57 @@
 package io.termd.core.readline;
 
 import java.nio.IntBuffer;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class EventQueue implements Iterator<KeyEvent> {
 
-  private KeyEvent[] bindings;
-  private final LinkedList<KeyEvent> events = new LinkedList<KeyEvent>();
-  private int[] pending = new int[0];
+  // The bracketed paste markers
+  static final int[] PASTE_BEGIN = {27, '[', '2', '0', '0', '~'};
+  static final int[] PASTE_END = {27, '[', '2', '0', '1', '~'};
+  static final KeyEvent PASTE_BEGIN_EVENT = new FunctionEvent("bracketed-paste-begin", PASTE_BEGIN);
+
+  // The max number of code points of a paste buffered until its end marker is received, a longer paste is
+  // delivered in several paste events so a missing end marker cannot make the buffer grow without limit
+  static final int MAX_PASTE_LENGTH = 4096;
+
+  private final Keymap.Node root;
+  private final ArrayDeque<KeyEvent> events = new ArrayDeque<KeyEvent>();
+
+  // The pending code points ring buffer, the capacity is a power of two
+  private int[] pending = new int[16];
+  private int head;
+  private int size;
+
+  // The event matching the start of the pending code points and the number of code points it consumes
+  private KeyEvent matched;
+  private int matchedLength;
+
+  // The number of pending code points already scanned for the end of a paste
+  private int pasteScanned;
+
+  // Whether the pending code points continue a paste delivered in several events, and whether they will
+  // after the matched event is consumed
+  private boolean pasting;
+  private boolean matchedPasting;
 
   public EventQueue(Keymap keymap) {
-    this.bindings = keymap.bindings.toArray(new KeyEvent[keymap.bindings.size()]);
+    root = keymap.root();
   }
 
   public EventQueue append(int... codePoints) {
-    pending = Arrays.copyOf(pending, pending.length + codePoints.length);
-    System.arraycopy(codePoints, 0 , pending, pending.length - codePoints.length, codePoints.length);
+    ensureCapacity(size + codePoints.length);
+    int mask = pending.length - 1;
+    int tail = (head + size) & mask;
+    int first = Math.min(codePoints.length, pending.length - tail);
+    System.arraycopy(codePoints, 0, pending, tail, first);
+    System.arraycopy(codePoints, first, pending, 0, codePoints.length - first);
+    size += codePoints.length;
+    matched = null;
     return this;
   }
 
@@ -47,7 +78,7 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public KeyEvent peek() {
     if (events.isEmpty()) {
-      return match(pending);
+      return match();
     } else {
       return events.peekFirst();
     }
@@ -59,10 +90,14 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public KeyEvent next() {
     if (events.isEmpty()) {
-      KeyEvent next = match(pending);
+      KeyEvent next = match();
       if (next != null) {
         events.add(next);
-        pending = Arrays.copyOfRange(pending, next.length(), pending.length);
+        head = (head + matchedLength) & (pending.length - 1);
+        size -= matchedLength;
+        matched = null;
+        pasteScanned = 0;
+        pasting = matchedPasting;
       }
     }
     return events.removeFirst();
@@ -70,8 +105,12 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public int[] clear() {
     events.clear();
-    int[] buffer = pending;
-    pending = new int[0];
+    int[] buffer = pendingCodePoints();
+    head = 0;
+    size = 0;
+    matched = null;
+    pasteScanned = 0;
+    pasting = false;
     return buffer;
   }
 
@@ -79,62 +118,119 @@ public class EventQueue implements Iterator<KeyEvent> {
    * @return the buffer chars as a read-only int buffer
    */
   public IntBuffer getBuffer() {
-    return IntBuffer.wrap(pending).asReadOnlyBuffer();
+    return IntBuffer.wrap(pendingCodePoints()).asReadOnlyBuffer();
+  }
+
+  private int[] pendingCodePoints() {
+    return copyPending(0, size);
   }
 
-  private KeyEvent match(int[] buffer) {
-    if (buffer.length > 0) {
+  private int[] copyPending(int offset, int length) {
+    int[] codePoints = new int[length];
+    int from = (head + offset) & (pending.length - 1);
+    int first = Math.min(length, pending.length - from);
+    System.arraycopy(pending, from, codePoints, 0, first);
+    System.arraycopy(pending, 0, codePoints, first, length - first);
+    return codePoints;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > pending.length) {
+      int newLength = pending.length;
+      while (newLength < capacity) {
+        newLength <<= 1;
+        if (newLength <= 0) {
+          throw new OutOfMemoryError();
+        }
+      }
+      int[] codePoints = pendingCodePoints();
+      pending = Arrays.copyOf(codePoints, newLength);
+      head = 0;
+    }
+  }
+
+  private KeyEvent match() {
+    if (matched == null && size > 0 && pasting) {
+      matchPaste(0);
+    } else if (matched == null && size > 0) {
+      // The longest binding matching the start of the buffer
       KeyEvent candidate = null;
-      int prefixes = 0;
-      next:
-      for (KeyEvent action : bindings) {
-        if (action.length() > 0) {
-          if (action.length() <= buffer.length) {
-            for (int i = 0;i < action.length();i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            if (candidate != null && candidate.length() > action.length()) {
-              continue next;
-            }
-            candidate = action;
-          } else {
-            for (int i = 0;i < buffer.length;i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            prefixes++;
-          }
+      // Whether a binding longer than the buffer starts with the buffer
+      boolean prefix = false;
+      Keymap.Node node = root;
+      int mask = pending.length - 1;
+      for (int i = 0;i < size;i++) {
+        node = node.child(pending[(head + i) & mask]);
+        if (node == null) {
+          break;
+        }
+        if (node.binding() != null) {
+          candidate = node.binding();
         }
+        prefix = i == size - 1 && node.hasChildren();
       }
-      if (candidate == null) {
-        if (prefixes == 0) {
-          final int c = buffer[0];
-          return new KeyEventSupport() {
-            @Override
-            public int getCodePointAt(int index) throws IndexOutOfBoundsException {
-              if (index != 0) {
-                throw new IndexOutOfBoundsException("Wrong index " + index);
-              }
-              return c;
+      if (candidate == PASTE_BEGIN_EVENT) {
+        matchPaste(PASTE_BEGIN.length);
+      } else if (candidate != null) {
+        matched = candidate;
+        matchedLength = candidate.length();
+        matchedPasting = false;
+      } else if (!prefix) {
+        final int c = pending[head];
+        matched = new KeyEventSupport() {
+          @Override
+          public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+            if (index != 0) {
+              throw new IndexOutOfBoundsException("Wrong index " + index);
             }
-            @Override
-            public int length() {
-              return 1;
-            }
-            @Override
-            public String toString() {
-              return "key:" + c;
-            }
-          };
+            return c;
+          }
+          @Override
+          public int length() {
+            return 1;
+          }
+          @Override
+          public String toString() {
+            return "key:" + c;
+          }
+        };
+        matchedLength = 1;
+        matchedPasting = false;
+      }
+    }
+    return matched;
+  }
+
+  /**
+   * Match a paste when the end marker has been received, the scan resumes where the previous one stopped
+   * so a paste received in many chunks is scanned once. When more than {@link #MAX_PASTE_LENGTH} code points
+   * are buffered without an end marker, the code points that cannot belong to the end marker are matched as
+   * a paste and the following code points continue the paste.
+   *
+   * @param start the index of the first pasted code point
+   */
+  private void matchPaste(int start) {
+    int mask = pending.length - 1;
+    int from = Math.max(start, pasteScanned);
+    next:
+    for (int i = from;i + PASTE_END.length <= size;i++) {
+      for (int j = 0;j < PASTE_END.length;j++) {
+        if (pending[(head + i + j) & mask] != PASTE_END[j]) {
+          continue next;
         }
-      } else {
-        return candidate;
       }
+      matched = new PasteEvent(copyPending(start, i - start));
+      matchedLength = i + PASTE_END.length;
+      matchedPasting = false;
+      return;
+    }
+    pasteScanned = Math.max(from, size - PASTE_END.length + 1);
+    if (size - start > MAX_PASTE_LENGTH) {
+      int length = size - start - (PASTE_END.length - 1);
+      matched = new PasteEvent(copyPending(start, length));
+      matchedLength = start + length;
+      matchedPasting = true;
     }
-    return null;
   }
 
   @Override
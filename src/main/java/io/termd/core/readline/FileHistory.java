@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A history persisted in a file, the file is loaded when the history is created and each added line is appended
+ * to it.<p/>
+ *
+ * The file contains one entry per line in UTF-8 from the oldest to the most recent, the newline and backslash chars
+ * of an entry are escaped with a backslash. The file is rewritten with the current entries when it is loaded or
+ * appended and it contains more than twice the max size, so its size remains bounded.<p/>
+ *
+ * The file is read in a heap buffer rather than mapped: a mapping cannot be released on demand and a mapped file
+ * cannot be replaced on some platforms.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class FileHistory extends InMemoryHistory implements Closeable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File file;
+  private Writer writer;
+  private int lines;
+
+  public FileHistory(File file) throws IOException {
+    this(file, DEFAULT_MAX_SIZE);
+  }
+
+  public FileHistory(File file, int maxSize) throws IOException {
+    super(maxSize);
+    this.file = file;
+    lines = load();
+    if (lines < 0 || lines > 2 * maxSize) {
+      rewrite();
+      lines = size();
+    }
+    writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+  }
+
+  /**
+   * @return the history file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  @Override
+  public synchronized boolean addFirst(int[] line) {
+    if (!super.addFirst(line)) {
+      return false;
+    }
+    if (writer != null) {
+      try {
+        writer.write(encode(line));
+        writer.flush();
+        if (++lines > 2 * getMaxSize()) {
+          compact();
+        }
+      } catch (IOException e) {
+        Logging.READLINE.error("Could not append to the history file " + file, e);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Close the history file, the lines added after are not persisted.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      Writer w = writer;
+      writer = null;
+      w.close();
+    }
+  }
+
+  /**
+   * @return the number of lines of the file or {@literal -1} when its last line is incomplete
+   */
+  private int load() throws IOException {
+    if (!file.exists() || file.length() == 0) {
+      return 0;
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    CharBuffer chars;
+    try {
+      FileChannel channel = raf.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Read until the end of the file
+      }
+      buffer.flip();
+      chars = UTF_8.decode(buffer);
+    } finally {
+      raf.close();
+    }
+    int lines = 0;
+    int[] line = new int[64];
+    int length = 0;
+    boolean escaping = false;
+    while (chars.hasRemaining()) {
+      char c = chars.get();
+      int cp = c;
+      if (Character.isHighSurrogate(c) && chars.hasRemaining()) {
+        cp = Character.toCodePoint(c, chars.get());
+      }
+      if (escaping) {
+        escaping = false;
+        cp = cp == 'n' ? '\n' : cp;
+      } else if (cp == '\\') {
+        escaping = true;
+        continue;
+      } else if (cp == '\n') {
+        if (length > 0) {
+          super.addFirst(Arrays.copyOf(line, length));
+        }
+        lines++;
+        length = 0;
+        continue;
+      }
+      if (length == line.length) {
+        line = Arrays.copyOf(line, length * 2);
+      }
+      line[length++] = cp;
+    }
+    if (length > 0) {
+      super.addFirst(Arrays.copyOf(line, length));
+      return -1;
+    }
+    return lines;
+  }
+
+  /**
+   * Rewrite the file with the current entries and append to the new file.
+   */
+  private void compact() throws IOException {
+    writer.close();
+    writer = null;
+    try {
+      rewrite();
+      lines = size();
+    } finally {
+      writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+    }
+  }
+
+  private void rewrite() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    Writer w = new OutputStreamWriter(new FileOutputStream(tmp), UTF_8);
+    try {
+      for (int i = size() - 1;i >= 0;i--) {
+        w.write(encode(get(i)));
+      }
+    } finally {
+      w.close();
+    }
+    if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+      throw new IOException("Could not rewrite the history file " + file);
+    }
+  }
+
+  private static String encode(int[] line) {
+    StringBuilder sb = new StringBuilder(line.length + 1);
+    for (int cp : line) {
+      switch (cp) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        default:
+          sb.appendCodePoint(cp);
+      }
+    }
+    return sb.append('\n').toString();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.AbstractList;
+
+/**
+ * The history of the lines accepted by {@link Readline}, the entry at index {@literal 0} is the most recent one.<p/>
+ *
+ * Implementations provide the storage of the entries and can override the prefix and substring searches with an
+ * indexed version, the default searches scan the entries.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public abstract class History extends AbstractList<int[]> {
+
+  /**
+   * Add a line as the most recent entry.
+   *
+   * @param line the line
+   * @return true if the line was added
+   */
+  public abstract boolean addFirst(int[] line);
+
+  /**
+   * Find the first entry starting with a prefix, searching from an index towards the older entries.
+   *
+   * @param prefix the prefix array
+   * @param length the prefix length
+   * @param fromIndex the index to search from
+   * @return the index of the entry or {@literal -1}
+   */
+  public int indexOfPrefix(int[] prefix, int length, int fromIndex) {
+    for (int i = Math.max(fromIndex, 0);i < size();i++) {
+      if (startsWith(get(i), prefix, length)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the first entry starting with a prefix, searching from an index towards the more recent entries.
+   *
+   * @param prefix the prefix array
+   * @param length the prefix length
+   * @param fromIndex the index to search from
+   * @return the index of the entry or {@literal -1}
+   */
+  public int lastIndexOfPrefix(int[] prefix, int length, int fromIndex) {
+    for (int i = Math.min(fromIndex, size() - 1);i >= 0;i--) {
+      if (startsWith(get(i), prefix, length)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the first entry containing a text, searching from an index towards the older entries.
+   *
+   * @param text the text array
+   * @param length the text length
+   * @param fromIndex the index to search from
+   * @return the index of the entry or {@literal -1}
+   */
+  public int indexOfSubstring(int[] text, int length, int fromIndex) {
+    for (int i = Math.max(fromIndex, 0);i < size();i++) {
+      if (lastIndexOf(get(i), text, length) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the first entry containing a text, searching from an index towards the more recent entries.
+   *
+   * @param text the text array
+   * @param length the text length
+   * @param fromIndex the index to search from
+   * @return the index of the entry or {@literal -1}
+   */
+  public int lastIndexOfSubstring(int[] text, int length, int fromIndex) {
+    for (int i = Math.min(fromIndex, size() - 1);i >= 0;i--) {
+      if (lastIndexOf(get(i), text, length) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the position of the last occurrence of a text in a line or {@literal -1}
+   */
+  protected static int lastIndexOf(int[] line, int[] text, int length) {
+    for (int i = line.length - length;i >= 0;i--) {
+      int j = 0;
+      while (j < length && line[i + j] == text[j]) {
+        j++;
+      }
+      if (j == length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  protected static boolean startsWith(int[] line, int[] prefix, int length) {
+    if (line.length < length) {
+      return false;
+    }
+    for (int i = 0;i < length;i++) {
+      if (line[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+
+import java.util.Arrays;
+
+/**
+ * An incremental search of the history, the search text is edited with the printable chars and the backward
+ * delete char, each char narrows the search from the current match. A search function event moves to the next match
+ * in its direction, {@literal Ctrl-G} restores the line as it was before the search and any other event ends
+ * the search with the current match and is then handled as usual.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class HistorySearch {
+
+  static final String REVERSE_SEARCH_HISTORY = "reverse-search-history";
+  static final String FORWARD_SEARCH_HISTORY = "forward-search-history";
+
+  private final Readline.Interaction interaction;
+  private final String prompt;
+  private final LineBuffer original;
+  private final int originalIndex;
+  private int[] text = new int[16];
+  private int length;
+  private int index;
+  private boolean reverse;
+  private boolean failed;
+
+  // The states before each search step, restored by the backward delete char
+  private int[] steps = new int[16];
+  private int depth;
+
+  public HistorySearch(Readline.Interaction interaction, boolean reverse) {
+    this.interaction = interaction;
+    this.prompt = interaction.currentPrompt();
+    this.original = interaction.buffer().copy();
+    this.originalIndex = interaction.getHistoryIndex();
+    this.index = originalIndex;
+    this.reverse = reverse;
+  }
+
+  /**
+   * Start the search, the interaction events are handled by the search until it ends.
+   */
+  public void start() {
+    interaction.search = this;
+    display();
+  }
+
+  void handle(KeyEvent event) {
+    if (event instanceof PasteEvent) {
+      insert(((PasteEvent) event).text());
+    } else if (event instanceof FunctionEvent) {
+      String name = ((FunctionEvent) event).name();
+      if (name.equals(REVERSE_SEARCH_HISTORY)) {
+        next(true);
+      } else if (name.equals(FORWARD_SEARCH_HISTORY)) {
+        next(false);
+      } else if (name.equals("backward-delete-char")) {
+        back();
+      } else {
+        accept(event);
+      }
+    } else if (event.length() == 1 && event.getCodePointAt(0) == 7) {
+      end(original, originalIndex);
+    } else if (event.length() == 1 && event.getCodePointAt(0) >= 32 && event.getCodePointAt(0) != 127) {
+      insert(new int[]{event.getCodePointAt(0)});
+    } else {
+      accept(event);
+    }
+  }
+
+  /**
+   * Append printable chars to the search text and search from the current match.
+   */
+  void insert(int[] codePoints) {
+    push();
+    for (int codePoint : codePoints) {
+      if (codePoint >= 32 && codePoint != 127) {
+        if (length == text.length) {
+          text = Arrays.copyOf(text, length * 2);
+        }
+        text[length++] = codePoint;
+      }
+    }
+    if (failed) {
+      bell();
+    } else {
+      search(index < 0 ? 0 : index);
+    }
+    display();
+  }
+
+  private void next(boolean reverse) {
+    push();
+    this.reverse = reverse;
+    failed = false;
+    int[] current = index < 0 ? null : interaction.historyStore().get(index);
+    int from = reverse ? index + 1 : index - 1;
+    while (search(from) && Arrays.equals(current, interaction.historyStore().get(index))) {
+      // Skip the entries equal to the current match
+      from = reverse ? index + 1 : index - 1;
+    }
+    display();
+  }
+
+  private void back() {
+    if (depth > 0) {
+      depth -= 4;
+      length = steps[depth];
+      index = steps[depth + 1];
+      reverse = steps[depth + 2] != 0;
+      failed = steps[depth + 3] != 0;
+    } else {
+      bell();
+    }
+    display();
+  }
+
+  private void push() {
+    if (depth == steps.length) {
+      steps = Arrays.copyOf(steps, depth * 2);
+    }
+    steps[depth++] = length;
+    steps[depth++] = index;
+    steps[depth++] = reverse ? 1 : 0;
+    steps[depth++] = failed ? 1 : 0;
+  }
+
+  /**
+   * Search the text from an index in the current direction, the search fails when the text is not found.
+   *
+   * @return true when a match is found
+   */
+  private boolean search(int from) {
+    History history = interaction.historyStore();
+    int found = reverse ? history.indexOfSubstring(text, length, from) : history.lastIndexOfSubstring(text, length, from);
+    if (found < 0) {
+      failed = true;
+      bell();
+      return false;
+    }
+    index = found;
+    return true;
+  }
+
+  private void accept(KeyEvent event) {
+    end(match(), index);
+    interaction.handle(event);
+  }
+
+  private void end(LineBuffer buffer, int historyIndex) {
+    interaction.search = null;
+    interaction.setHistoryIndex(historyIndex);
+    interaction.refresh(prompt, buffer);
+  }
+
+  private void display() {
+    String query = Helper.fromCodePoints(Arrays.copyOf(text, length));
+    interaction.refresh((failed ? "(failed " : "(") + (reverse ? "reverse-" : "") + "i-search)`" + query + "': ", match());
+  }
+
+  /**
+   * @return the current match with the cursor at the last occurrence of the text
+   */
+  private LineBuffer match() {
+    if (index < 0) {
+      return original;
+    }
+    int[] line = interaction.historyStore().get(index);
+    int cursor = History.lastIndexOf(line, text, length);
+    return new LineBuffer().insert(line).setCursor(cursor < 0 ? line.length : cursor);
+  }
+
+  private void bell() {
+    interaction.conn.stdoutHandler().accept(new int[]{'\007'});
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A history kept in memory with a bounded size, the oldest entry is discarded when a line is added to a full
+ * history.<p/>
+ *
+ * The entries are stored in a ring buffer and indexed by their first one and two code points, a prefix search
+ * only visits the entries sharing the first code points of the prefix. The entries are also indexed by each of
+ * the code points and pairs of consecutive code points they contain, a substring search only visits the entries
+ * containing the least frequent pair of the text.<p/>
+ *
+ * The history is thread safe and can be shared by several {@link Readline} instances, each operation locks
+ * the history only.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class InMemoryHistory extends History {
+
+  /**
+   * The default max number of entries.
+   */
+  public static final int DEFAULT_MAX_SIZE = 500;
+
+  /**
+   * The sequence numbers of the entries sharing the same first code points, in increasing order.
+   */
+  private static class Bucket {
+
+    private long[] seqs = new long[4];
+    private int head;
+    private int size;
+
+    private long get(int index) {
+      return seqs[(head + index) % seqs.length];
+    }
+
+    private void grow() {
+      if (size == seqs.length) {
+        long[] tmp = new long[seqs.length * 2];
+        for (int i = 0;i < size;i++) {
+          tmp[i] = get(i);
+        }
+        seqs = tmp;
+        head = 0;
+      }
+    }
+
+    private void addFirst(long seq) {
+      grow();
+      head = (head - 1 + seqs.length) % seqs.length;
+      seqs[head] = seq;
+      size++;
+    }
+
+    private void addLast(long seq) {
+      grow();
+      seqs[(head + size++) % seqs.length] = seq;
+    }
+
+    private void removeFirst() {
+      head = (head + 1) % seqs.length;
+      size--;
+    }
+
+    /**
+     * @return the position of the first sequence number greater than or equal to the argument
+     */
+    private int search(long seq) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (get(mid) < seq) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private final int[][] entries;
+  private final Map<Long, Bucket> index = new HashMap<Long, Bucket>();
+  private final Map<Long, Bucket> grams = new HashMap<Long, Bucket>();
+  private int head; // The slot of the most recent entry
+  private int size;
+  private long newest = -1; // The sequence number of the most recent entry, the entry at index i has newest - i
+  private boolean ignoreDuplicates;
+
+  public InMemoryHistory() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  public InMemoryHistory(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Invalid max size " + maxSize);
+    }
+    entries = new int[maxSize][];
+  }
+
+  /**
+   * Create a history with the entries of a collection, the first one is the most recent, the entries exceeding
+   * the max size are discarded.
+   *
+   * @param maxSize the max size
+   * @param lines the entries
+   */
+  public InMemoryHistory(int maxSize, Collection<int[]> lines) {
+    this(maxSize);
+    addAll(lines);
+  }
+
+  /**
+   * @return the max number of entries
+   */
+  public int getMaxSize() {
+    return entries.length;
+  }
+
+  /**
+   * @return whether a line equal to the most recent entry is ignored
+   */
+  public synchronized boolean isIgnoreDuplicates() {
+    return ignoreDuplicates;
+  }
+
+  /**
+   * Set whether a line equal to the most recent entry is ignored.
+   *
+   * @param ignoreDuplicates true to ignore the duplicates
+   * @return this object
+   */
+  public synchronized InMemoryHistory setIgnoreDuplicates(boolean ignoreDuplicates) {
+    this.ignoreDuplicates = ignoreDuplicates;
+    return this;
+  }
+
+  @Override
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public synchronized int[] get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Wrong index " + index);
+    }
+    return entries[(head + index) % entries.length];
+  }
+
+  @Override
+  public synchronized boolean addFirst(int[] line) {
+    if (ignoreDuplicates && size > 0 && Arrays.equals(line, entries[head])) {
+      return false;
+    }
+    if (size == entries.length) {
+      int[] oldest = entries[(head + size - 1) % entries.length];
+      unindex(oldest);
+      size--;
+    }
+    head = (head - 1 + entries.length) % entries.length;
+    entries[head] = line;
+    size++;
+    newest++;
+    Bucket bucket = bucket(line, 1, true);
+    if (bucket != null) {
+      bucket.addLast(newest);
+      bucket = bucket(line, 2, true);
+      if (bucket != null) {
+        bucket.addLast(newest);
+      }
+    }
+    for (Long gram : grams(line)) {
+      gramBucket(gram, true).addLast(newest);
+    }
+    return true;
+  }
+
+  /**
+   * Add a line as the oldest entry, the line is ignored when the history is full.
+   */
+  @Override
+  public synchronized boolean add(int[] line) {
+    if (size == entries.length) {
+      return false;
+    }
+    entries[(head + size) % entries.length] = line;
+    size++;
+    if (size == 1) {
+      newest++;
+    }
+    long seq = newest - size + 1;
+    Bucket bucket = bucket(line, 1, true);
+    if (bucket != null) {
+      bucket.addFirst(seq);
+      bucket = bucket(line, 2, true);
+      if (bucket != null) {
+        bucket.addFirst(seq);
+      }
+    }
+    for (Long gram : grams(line)) {
+      gramBucket(gram, true).addFirst(seq);
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized void clear() {
+    Arrays.fill(entries, null);
+    index.clear();
+    grams.clear();
+    head = 0;
+    size = 0;
+  }
+
+  @Override
+  public synchronized int indexOfPrefix(int[] prefix, int length, int fromIndex) {
+    fromIndex = Math.max(fromIndex, 0);
+    if (length == 0) {
+      return fromIndex < size ? fromIndex : -1;
+    }
+    Bucket bucket = bucket(prefix, Math.min(length, 2), false);
+    if (bucket != null) {
+      for (int i = bucket.search(newest - fromIndex + 1) - 1;i >= 0;i--) {
+        int idx = (int) (newest - bucket.get(i));
+        if (startsWith(get(idx), prefix, length)) {
+          return idx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public synchronized int lastIndexOfPrefix(int[] prefix, int length, int fromIndex) {
+    fromIndex = Math.min(fromIndex, size - 1);
+    if (fromIndex < 0) {
+      return -1;
+    }
+    if (length == 0) {
+      return fromIndex;
+    }
+    Bucket bucket = bucket(prefix, Math.min(length, 2), false);
+    if (bucket != null) {
+      for (int i = bucket.search(newest - fromIndex);i < bucket.size;i++) {
+        int idx = (int) (newest - bucket.get(i));
+        if (startsWith(get(idx), prefix, length)) {
+          return idx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public synchronized int indexOfSubstring(int[] text, int length, int fromIndex) {
+    fromIndex = Math.max(fromIndex, 0);
+    if (length == 0) {
+      return fromIndex < size ? fromIndex : -1;
+    }
+    Bucket bucket = rarestGram(text, length);
+    if (bucket != null) {
+      for (int i = bucket.search(newest - fromIndex + 1) - 1;i >= 0;i--) {
+        int idx = (int) (newest - bucket.get(i));
+        if (lastIndexOf(get(idx), text, length) >= 0) {
+          return idx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public synchronized int lastIndexOfSubstring(int[] text, int length, int fromIndex) {
+    fromIndex = Math.min(fromIndex, size - 1);
+    if (fromIndex < 0) {
+      return -1;
+    }
+    if (length == 0) {
+      return fromIndex;
+    }
+    Bucket bucket = rarestGram(text, length);
+    if (bucket != null) {
+      for (int i = bucket.search(newest - fromIndex);i < bucket.size;i++) {
+        int idx = (int) (newest - bucket.get(i));
+        if (lastIndexOf(get(idx), text, length) >= 0) {
+          return idx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the smallest bucket of the code point pairs of a text, or of its code point when the text has a single
+   *         one, {@code null} when one of them is not indexed
+   */
+  private Bucket rarestGram(int[] text, int length) {
+    if (length == 1) {
+      return gramBucket(gram(text, 0, 1), false);
+    }
+    Bucket rarest = null;
+    for (int i = 0;i < length - 1;i++) {
+      Bucket bucket = gramBucket(gram(text, i, 2), false);
+      if (bucket == null) {
+        return null;
+      }
+      if (rarest == null || bucket.size < rarest.size) {
+        rarest = bucket;
+      }
+    }
+    return rarest;
+  }
+
+  private void unindex(int[] line) {
+    // The oldest entry has the smallest sequence number of its buckets
+    for (int length = 1;length <= 2;length++) {
+      Bucket bucket = bucket(line, length, false);
+      if (bucket != null) {
+        bucket.removeFirst();
+        if (bucket.size == 0) {
+          index.remove(key(line, length));
+        }
+      }
+    }
+    for (Long gram : grams(line)) {
+      Bucket bucket = grams.get(gram);
+      bucket.removeFirst();
+      if (bucket.size == 0) {
+        grams.remove(gram);
+      }
+    }
+  }
+
+  private Bucket gramBucket(Long gram, boolean create) {
+    Bucket bucket = grams.get(gram);
+    if (bucket == null && create) {
+      bucket = new Bucket();
+      grams.put(gram, bucket);
+    }
+    return bucket;
+  }
+
+  /**
+   * @return the distinct code points and pairs of consecutive code points of a line
+   */
+  private static Set<Long> grams(int[] line) {
+    Set<Long> set = new HashSet<Long>();
+    for (int i = 0;i < line.length;i++) {
+      set.add(gram(line, i, 1));
+      if (i + 1 < line.length) {
+        set.add(gram(line, i, 2));
+      }
+    }
+    return set;
+  }
+
+  private static Long gram(int[] line, int offset, int length) {
+    return length == 1 ? (long) line[offset] : ((long) (line[offset] + 1) << 32) | (line[offset + 1] & 0xFFFFFFFFL);
+  }
+
+  private Bucket bucket(int[] line, int length, boolean create) {
+    if (line.length < length) {
+      return null;
+    }
+    Long key = key(line, length);
+    Bucket bucket = index.get(key);
+    if (bucket == null && create) {
+      bucket = new Bucket();
+      index.put(key, bucket);
+    }
+    return bucket;
+  }
+
+  private static Long key(int[] line, int length) {
+    return gram(line, 0, length);
+  }
+}
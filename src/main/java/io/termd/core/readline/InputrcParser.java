@@ -16,12 +16,12 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.util.CodePointBuilder;
 import io.termd.core.util.Logging;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
@@ -102,79 +102,74 @@ public abstract class InputrcParser {
   }
 
   public static Keymap create() {
-    InputStream inputrc = InputrcParser.class.getResourceAsStream("inputrc");
-    return new Keymap(inputrc);
+    return Keymap.getDefault();
   }
 
   static int[] parseKeySeq(String keyseq) {
-    ArrayList<Integer> builder = new ArrayList<Integer>();
+    CodePointBuilder builder = new CodePointBuilder();
     while (keyseq.length() > 0) {
       if (keyseq.startsWith("\\C-") && keyseq.length() > 3) {
         int c = (Character.toUpperCase(keyseq.charAt(3)) - '@') & 0x7F;
-        builder.add(c);
+        builder.append(c);
         keyseq = keyseq.substring(4);
       } else if (keyseq.startsWith("\\M-") && keyseq.length() > 3) {
         int c = (Character.toUpperCase(keyseq.charAt(3)) - '@') & 0x7F;
-        builder.add(27);
-        builder.add(c);
+        builder.append(27);
+        builder.append(c);
         keyseq = keyseq.substring(4);
       } else if (keyseq.startsWith("\\e")) {
-        builder.add(27);
+        builder.append(27);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\\\")) {
-        builder.add((int)'\\');
+        builder.append((int)'\\');
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\\"")) {
-        builder.add((int)'"');
+        builder.append((int)'"');
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\'")) {
-        builder.add((int)'\'');
+        builder.append((int)'\'');
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\a")) {
-        builder.add(7);
+        builder.append(7);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\b")) {
-        builder.add(8);
+        builder.append(8);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\d")) {
-        builder.add(127);
+        builder.append(127);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\f")) {
-        builder.add(12);
+        builder.append(12);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\n")) {
-        builder.add(10);
+        builder.append(10);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\r")) {
-        builder.add(13);
+        builder.append(13);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\t")) {
-        builder.add(9);
+        builder.append(9);
         keyseq = keyseq.substring(2);
       } else if (keyseq.startsWith("\\v")) {
-        builder.add(11);
+        builder.append(11);
         keyseq = keyseq.substring(2);
       } else {
         Matcher matcher = A.matcher(keyseq);
         if (matcher.find()) {
-          builder.add(Integer.parseInt(matcher.group(1), 8));
+          builder.append(Integer.parseInt(matcher.group(1), 8));
           keyseq = keyseq.substring(matcher.end());
         } else {
           matcher = B.matcher(keyseq);
           if (matcher.find()) {
-            builder.add(Integer.parseInt(matcher.group(1), 16));
+            builder.append(Integer.parseInt(matcher.group(1), 16));
             keyseq = keyseq.substring(matcher.end());
           } else {
-            builder.add((int) keyseq.charAt(0));
+            builder.append((int) keyseq.charAt(0));
             keyseq = keyseq.substring(1);
           }
         }
       }
     }
-    int[] f = new int[builder.size()];
-    for (int i = 0;i < builder.size();i++) {
-      f[i] = builder.get(i);
-    }
-    return f;
+    return builder.toArray();
   }
 }
@@ -18,43 +18,134 @@ package io.termd.core.readline;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * A keymap, binds key events to key sequence.
+ * A keymap, binds key events to key sequence.<p/>
+ *
+ * The bindings are compiled in an immutable trie of key sequences shared by the keymaps copied from this keymap
+ * and by the {@link EventQueue} created with it. Binding a function to a keymap copies the nodes of its key
+ * sequence only, so a copy of a shared keymap is a cheap overlay for the bindings of a session. The default
+ * keymap is parsed once and shared.
  *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class Keymap {
 
-  public static Keymap getDefault() {
-    InputStream inputrc = null;
-    try {
-        inputrc = Keymap.class.getResourceAsStream("inputrc");
-    } finally {
-        if (inputrc != null) {
-            try {
-                inputrc.close();
-            } catch (IOException e) {
-                // ignore
-            }
+  /**
+   * A node of the key sequence trie, the node at depth {@code n} holds the binding of the sequence of
+   * the {@code n} code points leading to it. A node is immutable, a binding is added to a copy of the path
+   * leading to it.
+   */
+  static final class Node {
+
+    private static final Node EMPTY = new Node(new int[0], new Node[0], null);
+
+    private final int[] codePoints;
+    private final Node[] children;
+    private final KeyEvent binding;
+
+    private Node(int[] codePoints, Node[] children, KeyEvent binding) {
+      this.codePoints = codePoints;
+      this.children = children;
+      this.binding = binding;
+    }
+
+    Node child(int codePoint) {
+      int index = Arrays.binarySearch(codePoints, codePoint);
+      return index >= 0 ? children[index] : null;
+    }
+
+    boolean hasChildren() {
+      return children.length > 0;
+    }
+
+    KeyEvent binding() {
+      return binding;
+    }
+
+    /**
+     * @return a copy of this node with the binding of the key sequence starting at the given depth, the last
+     *         binding of a sequence wins
+     */
+    private Node bind(KeyEvent binding, int depth) {
+      if (depth == binding.length()) {
+        return new Node(codePoints, children, binding);
+      }
+      int codePoint = binding.getCodePointAt(depth);
+      int index = Arrays.binarySearch(codePoints, codePoint);
+      if (index >= 0) {
+        Node[] newChildren = children.clone();
+        newChildren[index] = children[index].bind(binding, depth + 1);
+        return new Node(codePoints, newChildren, this.binding);
+      }
+      index = -(index + 1);
+      int[] newCodePoints = new int[codePoints.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(codePoints, 0, newCodePoints, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      newCodePoints[index] = codePoint;
+      newChildren[index] = EMPTY.bind(binding, depth + 1);
+      System.arraycopy(codePoints, index, newCodePoints, index + 1, codePoints.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      return new Node(newCodePoints, newChildren, this.binding);
+    }
+
+    private Node bind(KeyEvent binding) {
+      return binding.length() > 0 ? bind(binding, 0) : this;
+    }
+  }
+
+  private static class Default {
+
+    private static final Keymap KEYMAP = load();
+
+    private static Keymap load() {
+      InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
+      try {
+        return new Keymap(inputrc);
+      } finally {
+        try {
+          inputrc.close();
+        } catch (IOException e) {
+          // ignore
         }
+      }
     }
+  }
 
-    return new Keymap(inputrc);
+  /**
+   * @return a copy of the default keymap, the default keymap is parsed once and its bindings are shared
+   */
+  public static Keymap getDefault() {
+    return new Keymap(Default.KEYMAP);
   }
 
-  final List<KeyEvent> bindings;
+  // The bracketed paste begin marker is bound in every keymap
+  private static final Node ROOT = Node.EMPTY.bind(EventQueue.PASTE_BEGIN_EVENT);
+
+  private volatile Node root;
 
   public Keymap() {
-    bindings = new ArrayList<KeyEvent>();
-    Collections.addAll(bindings, Keys.values());
+    this(Arrays.<KeyEvent>asList(Keys.values()));
   }
 
   public Keymap(List<KeyEvent> keys) {
-    this.bindings = new ArrayList<KeyEvent>(keys);
+    root = ROOT;
+    for (KeyEvent key : keys) {
+      root = root.bind(key);
+    }
+  }
+
+  /**
+   * Create a copy of a keymap, the copy shares the bindings of the keymap and the bindings added to the copy
+   * do not modify the keymap.
+   *
+   * @param keymap the keymap to copy
+   */
+  public Keymap(Keymap keymap) {
+    root = keymap.root;
   }
 
   /**
@@ -63,15 +154,21 @@ public class Keymap {
    * @param inputrc the configuration file
    */
   public Keymap(InputStream inputrc) {
-    final ArrayList<KeyEvent> actions = new ArrayList<KeyEvent>();
+    root = ROOT;
     InputrcParser handler = new InputrcParser() {
       @Override
       public void bindFunction(final int[] keySequence, final String functionName) {
-        actions.add(new FunctionEvent(functionName, keySequence));
+        root = root.bind(new FunctionEvent(functionName, keySequence));
       }
     };
     InputrcParser.parse(inputrc, handler);
-    this.bindings = actions;
+  }
+
+  /**
+   * @return the root of the bindings trie
+   */
+  Node root() {
+    return root;
   }
 
   /**
@@ -92,8 +189,8 @@ public class Keymap {
    * @param function the function to bind
    * @return this keymap
    */
-  public Keymap bindFunction(int[] keyseq, String function) {
-    bindings.add(new FunctionEvent(function, keyseq));
+  public synchronized Keymap bindFunction(int[] keyseq, String function) {
+    root = root.bind(new FunctionEvent(function, keyseq));
     return this;
   }
 }
@@ -17,44 +17,77 @@
 package io.termd.core.readline;
 
 import io.termd.core.function.Consumer;
+import io.termd.core.util.CodePointBuilder;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Wcwidth;
 
 import java.util.Arrays;
 
+
 /**
+ * A line of code points edited at a cursor position.<p/>
+ *
+ * The code points are stored in a gap buffer: the free space of the backing array is kept as a gap that is moved
+ * to the cursor when the line is edited, so inserting or deleting at the cursor does not shift the rest of the
+ * line. The backing array is allocated on the first insertion.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class LineBuffer {
 
+  private static final int[] EMPTY = new int[0];
+  private static final int MIN_CAPACITY = 16;
+
+  // The control sequences emitted by the update
+  private static final int[] GLITCH_CORRECTION = {' ', '\r'};
+  private static final int[] ERASE_END_OF_LINE = {'\033', '[', 'K'};
+  private static final int[] CURSOR_FORWARD = {'\033', '[', '1', 'C'};
+  private static final int[] CURSOR_UP = {'\033', '[', '1', 'A'};
+  private static final int[] CURSOR_DOWN = {'\033', '[', '1', 'B'};
+
   private int[] data;
   private int cursor;
   private int size;
+  private int gap; // The gap start, the gap length is data.length - size
+
+  // The row index of the line for the index width, built lazily by the position queries: rowStarts[r] is the
+  // offset of the first char of the row r and rowWrapped[r] tells whether this char was moved to the row because
+  // it did not fit in the previous row. The chars before scanOffset have been indexed.
+  private int indexWidth;
+  private int[] rowStarts;
+  private boolean[] rowWrapped;
+  private int rowCount;
+  private int scanOffset;
+  private int scanCol;
 
   public LineBuffer() {
-    this(1000);
+    data = EMPTY;
   }
 
   public LineBuffer(int cap) {
-      data = new int[cap];
+    data = cap > 0 ? new int[cap] : EMPTY;
   }
 
   private LineBuffer(LineBuffer that) {
-    data = that.data.clone();
+    data = that.size > 0 ? new int[that.size + MIN_CAPACITY] : EMPTY;
+    that.copyTo(data, 0);
     cursor = that.cursor;
     size = that.size;
+    gap = size;
   }
 
   public int[] toArray() {
-    return Arrays.copyOf(data, size);
+    int[] codePoints = new int[size];
+    copyTo(codePoints, 0);
+    return codePoints;
   }
 
   public int getAt(int index) {
     if (index < 0 | index >= size) {
       throw new IndexOutOfBoundsException();
     }
-    return data[index];
+    return data[index < gap ? index : index + data.length - size];
   }
 
   /**
@@ -71,8 +104,22 @@ public class LineBuffer {
    */
   public LineBuffer insert(int... codePoints) {
     for (int cp : codePoints) {
-      insert(cp);
+      if (!isInsertable(cp)) {
+        // Insert the valid prefix and fail on the invalid char
+        for (int c : codePoints) {
+          insert(c);
+        }
+        return this;
+      }
     }
+    int length = codePoints.length;
+    invalidate(cursor);
+    moveGap(cursor);
+    ensureGap(length);
+    System.arraycopy(codePoints, 0, data, gap, length);
+    gap += length;
+    cursor += length;
+    size += length;
     return this;
   }
 
@@ -96,29 +143,68 @@ public class LineBuffer {
       if (cp != '\n') {
         throw new IllegalArgumentException("LineBuffer can only contain \\n control char");
       }
-    } else if (w != 1) {
-      throw new IllegalArgumentException("LineBuffer cannot contain chars of width!=1 for the moment");
+    } else if (w != 1 && w != 2) {
+      throw new IllegalArgumentException("LineBuffer cannot contain chars of width " + w + " for the moment");
     }
-    if (cursor < size) {
-      System.arraycopy(data, cursor, data, cursor + 1, size - cursor);
-    }
-    data[cursor++] = cp;
+    invalidate(cursor);
+    moveGap(cursor);
+    ensureGap(1);
+    data[gap++] = cp;
+    cursor++;
     size++;
-    if (size >= data.length) {
-        resize();
-    }
     return this;
   }
 
-  private void resize() {
-      int[] tmpData = new int[data.length * 2];
-      System.arraycopy(this.data, 0, tmpData, 0, data.length);
-      this.data = tmpData;
+  /**
+   * @return whether the code point can be inserted in a line buffer
+   */
+  static boolean isInsertable(int cp) {
+    int w = Wcwidth.of(cp);
+    return w == -1 ? cp == '\n' : (w == 1 || w == 2);
+  }
+
+  /**
+   * Move the gap start to the specified index of the line.
+   */
+  private void moveGap(int index) {
+    int gapLength = data.length - size;
+    if (index < gap) {
+      System.arraycopy(data, index, data, index + gapLength, gap - index);
+    } else if (index > gap) {
+      System.arraycopy(data, gap + gapLength, data, gap, index - gap);
+    }
+    gap = index;
+  }
+
+  /**
+   * Ensure the gap can hold the specified number of code points.
+   */
+  private void ensureGap(int length) {
+    int gapLength = data.length - size;
+    if (gapLength < length) {
+      int capacity = Math.max(Math.max(data.length * 2, size + length), MIN_CAPACITY);
+      int[] tmp = new int[capacity];
+      int tail = size - gap;
+      System.arraycopy(data, 0, tmp, 0, gap);
+      System.arraycopy(data, data.length - tail, tmp, capacity - tail, tail);
+      data = tmp;
+    }
+  }
+
+  /**
+   * Copy the code points of the line to an array.
+   */
+  private void copyTo(int[] dst, int offset) {
+    System.arraycopy(data, 0, dst, offset, gap);
+    System.arraycopy(data, gap + data.length - size, dst, offset + gap, size - gap);
   }
 
   public LineStatus.Ext insertEscaped(int... codePoints) {
     LineStatus.Ext status = new LineStatus.Ext();
-    Helper.consumeTo(toArray(), status);
+    moveGap(size);
+    for (int i = 0;i < size;i++) {
+      status.accept(data[i]);
+    }
     status.buffer.clear();
     for (int cp : codePoints) {
       if (cp == 0) {
@@ -183,7 +269,7 @@ public class LineBuffer {
       }
     }
 
-    insert(status.buffer.toArray(new Integer[0]));
+    insert(status.buffer.toArray());
     return status;
   }
 
@@ -200,15 +286,20 @@ public class LineBuffer {
   public int delete(int delta) {
     if (delta > 0) {
       delta = Math.min(delta, size - cursor);
-      System.arraycopy(data, cursor + delta, data, cursor, size - cursor + delta);
+      invalidate(cursor);
+      // The deleted chars following the gap join it
+      moveGap(cursor);
       size -= delta;
       return delta;
     } else if (delta < 0) {
-      delta = - Math.min(- delta, cursor);
-      System.arraycopy(data, cursor, data, cursor + delta, size - cursor);
-      size += delta;
-      cursor += delta;
-      return - delta;
+      delta = Math.min(- delta, cursor);
+      invalidate(cursor - delta);
+      // The deleted chars preceding the gap join it
+      moveGap(cursor);
+      gap -= delta;
+      size -= delta;
+      cursor -= delta;
+      return delta;
     } else {
       return 0;
     }
@@ -219,7 +310,16 @@ public class LineBuffer {
   }
 
   public void setSize(int size) {
-    this.size = size >= 0 ? size : 0;
+    size = size >= 0 ? size : 0;
+    invalidate(Math.min(size, this.size));
+    if (size <= this.size) {
+      moveGap(size);
+    } else {
+      moveGap(this.size);
+      ensureGap(size - this.size);
+      gap = size;
+    }
+    this.size = size;
     if (cursor > size) {
       cursor = size;
     }
@@ -243,8 +343,10 @@ public class LineBuffer {
   }
 
   public void clear() {
+    invalidate(0);
     size = 0;
     cursor = 0;
+    gap = 0;
   }
 
   public int moveCursor(int delta) {
@@ -256,7 +358,7 @@ public class LineBuffer {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     for (int i = 0; i < size; i++) {
-      sb.appendCodePoint(data[i]);
+      sb.appendCodePoint(getAt(i));
     }
     return sb.toString();
   }
@@ -283,7 +385,105 @@ public class LineBuffer {
     if (offset > size) {
       throw new IndexOutOfBoundsException("Offset cannot bebe greater than the buffer size");
     }
-    return Helper.computePosition(data, new Vector(0, 0), offset, width);
+    if (offset < 0) {
+      throw new IndexOutOfBoundsException("Offset cannot be negative");
+    }
+    if (rowStarts == null || width != indexWidth) {
+      indexWidth = width;
+      if (rowStarts == null) {
+        rowStarts = new int[4];
+        rowWrapped = new boolean[4];
+      }
+      rowCount = 1;
+      scanOffset = 0;
+      scanCol = 0;
+    }
+    while (scanOffset < offset) {
+      scan();
+    }
+    // Find the row of the offset
+    int low = 0;
+    int high = rowCount - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (rowStarts[mid] <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    int row = low;
+    if (rowStarts[row] == offset && rowWrapped[row]) {
+      // The char at the offset was moved to the next row but the offset is still at the end of the previous row
+      row--;
+    }
+    int col = 0;
+    for (int i = rowStarts[row];i < offset;i++) {
+      int cp = getAt(i);
+      int w = Wcwidth.of(cp);
+      if (w == -1) {
+        if (cp == '\r') {
+          col = 0;
+        }
+      } else {
+        col += w;
+      }
+    }
+    return new Vector(col, row);
+  }
+
+  /**
+   * Index the char at the scan offset, the rows are computed like {@link Helper#computePosition}.
+   */
+  private void scan() {
+    int offset = scanOffset++;
+    int cp = getAt(offset);
+    int w = Wcwidth.of(cp);
+    if (w == -1) {
+      if (cp == '\r') {
+        scanCol = 0;
+      } else if (cp == '\n') {
+        scanCol = 0;
+        addRow(offset + 1, false);
+      }
+    } else {
+      if (scanCol + w > indexWidth) {
+        if (w > indexWidth) {
+          throw new UnsupportedOperationException("Handle this case gracefully");
+        }
+        scanCol = 0;
+        addRow(offset, true);
+      }
+      scanCol += w;
+      if (scanCol >= indexWidth) {
+        scanCol -= indexWidth;
+        addRow(offset + 1, false);
+      }
+    }
+  }
+
+  private void addRow(int start, boolean wrapped) {
+    if (rowCount == rowStarts.length) {
+      rowStarts = Arrays.copyOf(rowStarts, rowCount * 2);
+      rowWrapped = Arrays.copyOf(rowWrapped, rowCount * 2);
+    }
+    rowStarts[rowCount] = start;
+    rowWrapped[rowCount++] = wrapped;
+  }
+
+  /**
+   * Invalidate the row index from the specified offset, the rows starting before the offset remain valid
+   * since they only depend on the chars preceding them. A wrapped row starting at the offset depends on the
+   * char at the offset and is invalidated as well.
+   */
+  private void invalidate(int offset) {
+    if (scanOffset > offset || (rowCount > 1 && rowStarts[rowCount - 1] == offset && rowWrapped[rowCount - 1])) {
+      while (rowCount > 1 && rowStarts[rowCount - 1] >= offset) {
+        rowCount--;
+      }
+      scanOffset = rowCount > 0 ? rowStarts[rowCount - 1] : 0;
+      scanCol = 0;
+    }
   }
 
   private int findEndOfLine(int offset) {
@@ -303,27 +503,95 @@ public class LineBuffer {
   }
 
   public void update(LineBuffer dst, Consumer<int[]> out, int width) {
+    CodePointBuilder builder = new CodePointBuilder();
+    update(dst, builder, width);
+    if (builder.length() > 0) {
+      out.accept(builder.toArray());
+    }
+  }
+
+  /**
+   * Like {@link #update(LineBuffer, Consumer, int)} but appends the output to a builder.
+   */
+  void update(LineBuffer dst, CodePointBuilder out, int width) {
+    // The update reads the code points in place
+    moveGap(size);
+    dst.moveGap(dst.size);
     new Update(out, width).perform(dst);
   }
 
+  /**
+   * Set the content and the cursor of this buffer to those of another buffer, the backing array is reused when
+   * it is large enough.
+   */
+  void set(LineBuffer that) {
+    if (that != this) {
+      int prefix = 0;
+      while (prefix < size && prefix < that.size && getAt(prefix) == that.getAt(prefix)) {
+        prefix++;
+      }
+      invalidate(prefix);
+      ensureCapacity(that.size);
+      that.copyTo(data, 0);
+      size = that.size;
+      cursor = that.cursor;
+      gap = size;
+    }
+  }
+
+  /**
+   * Set the content of this buffer to a prompt followed by the content of a buffer, the cursor is set
+   * after the prompt at the buffer cursor.
+   */
+  void render(int[] prompt, LineBuffer content) {
+    int prefix = 0;
+    while (prefix < size && prefix < prompt.length && getAt(prefix) == prompt[prefix]) {
+      prefix++;
+    }
+    if (prefix == prompt.length) {
+      while (prefix < size && prefix - prompt.length < content.size && getAt(prefix) == content.getAt(prefix - prompt.length)) {
+        prefix++;
+      }
+    }
+    invalidate(prefix);
+    ensureCapacity(prompt.length + content.size);
+    System.arraycopy(prompt, 0, data, 0, prompt.length);
+    content.copyTo(data, prompt.length);
+    size = prompt.length + content.size;
+    cursor = prompt.length + content.cursor;
+    gap = size;
+  }
+
+  /**
+   * Ensure the backing array can hold the specified number of code points, the content is discarded.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > data.length) {
+      data = new int[Math.max(Math.max(data.length * 2, capacity), MIN_CAPACITY)];
+    }
+  }
+
   // The update algorithm encapsulated in an inner class
   // todo : use term capabilities instead of hardcoded ansi programming
   // todo : support other control chars
-  // todo : support codepoint of with != 1 (like combining chars, etc...)
+  // todo : support codepoint of width 0 (like combining chars, etc...)
+  // A char of width 2 that does not fit at the end of a row is wrapped to the next row and the remaining cell is
+  // blanked, like terminals do and like the row index computes it
   // todo : issue existing chars for moving right instead of cursor left movement
   private class Update {
 
-    private final Consumer<int[]> out;
+    private final CodePointBuilder out;
     private final int width;
     private int scrCol, scrRow; // The current screen cursor position
     private int srcIdx, srcCol, srcRow; // The source state
     private int dstIdx, dstCol, dstRow; // The destination state
 
-    public Update(Consumer<int[]> out, int width) {
+    public Update(CodePointBuilder out, int width) {
       this.out = out;
       this.width = width;
-      this.scrCol = getCursorPosition(width).x();
-      this.scrRow = getCursorPosition(width).y();
+      Vector pos = getCursorPosition(width);
+      this.scrCol = pos.x();
+      this.scrRow = pos.y();
     }
 
     public void perform(LineBuffer dst) {
@@ -336,33 +604,28 @@ public class LineBuffer {
         // Handle one dest line at a time
         while (dstIdx < eol) {
           int c = dst.data[dstIdx];
-          int w = Wcwidth.of(c);
-          if (w != 1) {
-            throw new UnsupportedOperationException();
+          int w = width(c);
+          boolean wrapped = false;
+          if (dstCol + w > width) {
+            // Blank the remaining cell, the char is then written on the next row
+            moveCursor(dstCol, dstRow);
+            out.append(' ');
+            dstCol = 0;
+            dstRow++;
+            scrCol = dstCol;
+            scrRow = dstRow;
+            ensure(dstCol, dstRow);
+            wrapped = true;
           }
-          if (srcIdx < size && new Vector(srcCol, srcRow).equals(new Vector(dstCol, dstRow))) {
-            if (data[srcIdx] == dst.data[dstIdx]) {
-              dstCol += w;
-              if (dstCol == width) {
-                dstCol = 0;
-                dstRow++;
-              }
-            } else {
-              moveCursor(dstCol, dstRow);
-              out.accept(new int[]{c});
-              dstCol += w;
-              if (dstCol == width) {
-                dstCol = 0;
-                dstRow++;
-              }
-              scrCol = dstCol;
-              scrRow = dstRow;
+          if (!wrapped && srcIdx < size && srcCol == dstCol && srcRow == dstRow && data[srcIdx] == c) {
+            dstCol += w;
+            if (dstCol == width) {
+              dstCol = 0;
+              dstRow++;
             }
-            dstIdx++;
           } else {
             moveCursor(dstCol, dstRow);
-            dstIdx++;
-            out.accept(new int[]{c});
+            out.append(c);
             dstCol += w;
             if (dstCol == width) {
               dstCol = 0;
@@ -371,12 +634,13 @@ public class LineBuffer {
             scrCol = dstCol;
             scrRow = dstRow;
           }
+          dstIdx++;
           ensure(dstCol, dstRow);
         }
 
-        // Glitch correction if needed
-        if (needGlitchCorrection && dstCol == 0) {
-          out.accept(new int[]{' ','\r'});
+        // Glitch correction if needed, when the last char of the line was written at the end of a row
+        if (needGlitchCorrection && dstCol == 0 && scrCol == dstCol && scrRow == dstRow) {
+          out.append(GLITCH_CORRECTION);
         }
 
         // Remove extra chars if needed
@@ -387,13 +651,13 @@ public class LineBuffer {
           int _col = srcCol, _row = srcRow;
           if (ensure(dstCol, dstRow)) {
             moveCursor(_col, _row);
-            out.accept(new int[]{'\033','[', 'K'});
+            out.append(ERASE_END_OF_LINE);
           }
         }
 
         // We may need to issue some \n after we are done
         while (scrRow < dstRow) {
-          out.accept(new int[]{'\n'});
+          out.append('\n');
           scrRow++;
           scrCol = 0;
         }
@@ -401,7 +665,9 @@ public class LineBuffer {
 
       // Erase extra remaining chars
       if (srcIdx < size) {
-        int _col = srcCol;
+        // The cells between the end of the dest and the source chars are the remaining half of an overwritten wide
+        // char
+        int _col = srcRow == dstRow ? dstCol : srcCol;
         int _row = srcRow;
         int count = 0;
         while (srcIdx < size) {
@@ -409,22 +675,29 @@ public class LineBuffer {
           if (c == '\n') {
             if (count > 0) {
               moveCursor(_col, _row);
-              out.accept(new int[]{'\033', '[', 'K'});
+              out.append(ERASE_END_OF_LINE);
               count = 0;
             }
             _col = srcCol = 0;
             _row = ++srcRow;
           } else {
-            int w = Wcwidth.of(c);
-            if (w != 1) {
-              throw new UnsupportedOperationException();
+            int w = width(c);
+            if (srcCol + w > width) {
+              // The char was wrapped to the next row
+              if (count > 0) {
+                moveCursor(_col, _row);
+                out.append(ERASE_END_OF_LINE);
+                count = 0;
+              }
+              _col = srcCol = 0;
+              _row = ++srcRow;
             }
-            srcCol++;
+            srcCol += w;
             count++;
             if (srcCol == width) {
               if (count > 0) {
                 moveCursor(_col, _row);
-                out.accept(new int[]{'\033', '[', 'K'});
+                out.append(ERASE_END_OF_LINE);
                 count = 0;
                 _col = srcCol = 0;
                 _row = ++srcRow;
@@ -437,17 +710,16 @@ public class LineBuffer {
         }
         if (count > 0) {
           moveCursor(_col, _row);
-          out.accept(new int[]{'\033', '[', 'K'});
+          out.append(ERASE_END_OF_LINE);
         }
       }
 
       // Move cursor to initial position
-      moveCursor(dst.getCursorPosition(width).x(), dst.getCursorPosition(width).y());
+      Vector pos = dst.getCursorPosition(width);
+      moveCursor(pos.x(), pos.y());
 
       // Update internal state
-      data = dst.data.clone();
-      cursor = dst.cursor;
-      size = dst.size;
+      set(dst);
     }
 
     /**
@@ -460,29 +732,45 @@ public class LineBuffer {
     private boolean ensure(int col, int row) {
       boolean ret = false;
       while (srcIdx < size) {
+        int c = data[srcIdx];
+        if (c != '\n' && srcCol + width(c) > width) {
+          // The char was wrapped to the next row
+          srcCol = 0;
+          srcRow++;
+        }
         if (srcRow > row || (srcRow == row && srcCol >= col)) {
           break;
         }
-        int c = data[srcIdx];
-        int w = Wcwidth.of(c);
-        if (w == 1) {
+        if (c == '\n') {
+          srcCol = 0;
+          srcRow++;
+        } else {
           ret = true;
-          srcCol++;
+          srcCol += width(c);
           if (srcCol == width) {
             srcRow++;
             srcCol = 0;
           }
-        } else if (c == '\n') {
-          srcCol = 0;
-          srcRow++;
-        } else {
-          throw new UnsupportedOperationException();
         }
         srcIdx++;
       }
       return ret;
     }
 
+    /**
+     * @return the width of a char of the line, a char of width 1 or 2
+     */
+    private int width(int c) {
+      int w = Wcwidth.of(c);
+      if (w != 1 && w != 2) {
+        throw new UnsupportedOperationException();
+      }
+      if (w > width) {
+        throw new UnsupportedOperationException("Handle this case gracefully");
+      }
+      return w;
+    }
+
     /**
      * Move the cursor to the specified coordinates, this updates the internal physical cursor.
      *
@@ -492,16 +780,16 @@ public class LineBuffer {
     private void moveCursor(int col, int row) {
       if (scrCol != col) {
         if (col == 0) {
-          out.accept(new int[]{'\r'});
+          out.append('\r');
           scrCol = 0;
         } else {
           while (scrCol != col) {
             if (scrCol < col) {
               scrCol++;
-              out.accept(new int[]{'\033','[','1','C'});
+              out.append(CURSOR_FORWARD);
             } else {
               scrCol--;
-              out.accept(new int[]{'\b'});
+              out.append('\b');
             }
           }
         }
@@ -509,10 +797,10 @@ public class LineBuffer {
       while (scrRow != row) {
         if (row < scrRow) {
           scrRow--;
-          out.accept(new int[]{27,'[','1','A'});
+          out.append(CURSOR_UP);
         } else {
           scrRow++;
-          out.accept(new int[]{27,'[','1','B'});
+          out.append(CURSOR_DOWN);
         }
       }
     }
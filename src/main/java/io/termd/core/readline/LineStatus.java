@@ -17,8 +17,7 @@
 package io.termd.core.readline;
 
 import io.termd.core.function.IntConsumer;
-
-import java.util.LinkedList;
+import io.termd.core.util.CodePointBuilder;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -27,37 +26,37 @@ public class LineStatus implements IntConsumer {
 
   // Keeping this internal to this package
   static class Ext extends LineStatus implements IntConsumer {
-    final LinkedList<Integer> buffer;
+    final CodePointBuilder buffer;
     Ext() {
-      this.buffer = new LinkedList<Integer>();
+      this.buffer = new CodePointBuilder();
     }
     public void accept(int codePoint) {
       super.accept(codePoint);
       switch (transition) {
         case TO_WEAK:
-          buffer.add((int) '"');
+          buffer.append('"');
           break;
         case TO_STRONG:
-          buffer.add((int) '\'');
+          buffer.append('\'');
           break;
         case FROM_WEAK:
-          buffer.add((int) '"');
+          buffer.append('"');
           break;
         case FROM_STRONG:
-          buffer.add((int) '\'');
+          buffer.append('\'');
           break;
         case TO_ESC:
-          buffer.add((int)'\\');
+          buffer.append('\\');
           break;
         case FROM_ESC:
           if (codePoint != '\r') {
-            buffer.add(codePoint);
+            buffer.append(codePoint);
           } else {
             buffer.removeLast();
           }
           break;
         case CODE_POINT:
-          buffer.add(codePoint);
+          buffer.append(codePoint);
           break;
       }
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+/**
+ * The text pasted by the user between the {@literal ESC[200~} and {@literal ESC[201~} markers of the
+ * bracketed paste mode, the event code points are the pasted text without the markers.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+class PasteEvent extends KeyEventSupport {
+
+  private final int[] text;
+
+  PasteEvent(int[] text) {
+    this.text = text;
+  }
+
+  /**
+   * @return the pasted text
+   */
+  int[] text() {
+    return text;
+  }
+
+  @Override
+  public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= text.length) {
+      throw new IndexOutOfBoundsException("Wrong index: " + index);
+    }
+    return text[index];
+  }
+
+  @Override
+  public int length() {
+    return text.length;
+  }
+
+  @Override
+  public String toString() {
+    return "PasteEvent[length=" + text.length + "]";
+  }
+}
@@ -20,13 +20,14 @@ import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
+import io.termd.core.util.CodePointBuilder;
 import io.termd.core.util.Logging;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -37,42 +38,85 @@ import java.util.Map;
  */
 public class Readline {
 
-  /**
-   * The max number of history item that will be saved in memory.
-   */
-  private static final int MAX_HISTORY_SIZE = 500;
-
   // private final Device device;
   private final Map<String, Function> functions = new HashMap<String, Function>();
   private final EventQueue decoder;
   private Interaction interaction;
   private Vector size;
-  private volatile List<int[]> history;
+  private volatile History history;
+  private volatile boolean bracketedPaste;
 
   public Readline(Keymap keymap) {
     // https://github.com/alibaba/termd/issues/42
     // this.device = TermInfo.defaultInfo().getDevice("xterm"); // For now use xterm
     this.decoder = new EventQueue(keymap);
-    this.history = new ArrayList<int[]>();
+    this.history = new InMemoryHistory();
     addFunction(ACCEPT_LINE);
   }
 
   /**
-   * @return the current history
+   * @return a snapshot of the current history lines taken under the history lock, the first line is the most
+   *         recent one, use {@link #getHistoryStore()} to modify the history
    */
   public List<int[]> getHistory() {
+    History history = this.history;
+    synchronized (history) {
+      return new ArrayList<int[]>(history);
+    }
+  }
+
+  /**
+   * @return the current history
+   */
+  public History getHistoryStore() {
     return history;
   }
 
   /**
-   * Set the history
+   * Set the history, the history can be shared by several readline instances when it is thread safe.
    *
    * @param history the history
    */
-  public void setHistory(List<int[]> history) {
+  public void setHistory(History history) {
     this.history = history;
   }
 
+  /**
+   * Set the history from a list of lines, the first line is the most recent one. A {@link History} is used as is,
+   * any other list is copied in an {@link InMemoryHistory}: the lines accepted afterwards are not added to the list,
+   * they are returned by {@link #getHistory()}.
+   *
+   * @param history the history lines
+   * @deprecated use {@link #setHistory(History)}
+   */
+  @Deprecated
+  public void setHistory(List<int[]> history) {
+    if (history instanceof History) {
+      setHistory((History) history);
+    } else {
+      setHistory(new InMemoryHistory(InMemoryHistory.DEFAULT_MAX_SIZE, history));
+    }
+  }
+
+  /**
+   * @return whether the bracketed paste mode is enabled
+   */
+  public boolean isBracketedPaste() {
+    return bracketedPaste;
+  }
+
+  /**
+   * Enable the terminal bracketed paste mode during an interaction, a paste is then inserted in the line at once
+   * and its newlines do not accept the line.
+   *
+   * @param bracketedPaste true to enable the mode
+   * @return this object
+   */
+  public Readline setBracketedPaste(boolean bracketedPaste) {
+    this.bracketedPaste = bracketedPaste;
+    return this;
+  }
+
   /**
    * @return the last known size
    */
@@ -110,16 +154,57 @@ public class Readline {
     while (true) {
       Interaction handler;
       KeyEvent event;
+      int[] text = null;
+      Completion cancelled;
       synchronized (this) {
-        if (decoder.hasNext() && interaction != null && !interaction.paused) {
+        if (decoder.hasNext() && interaction != null && interaction.paused && interaction.completion != null
+            && interaction.completion.isCancellable()) {
+          // The user typed while a cancellable completion is pending
+          cancelled = interaction.completion;
+          handler = null;
+          event = null;
+        } else if (decoder.hasNext() && interaction != null && !interaction.paused) {
+          cancelled = null;
           event = decoder.next();
           handler = interaction;
+          if (isSelfInsert(event) && decoder.hasNext() && isSelfInsert(decoder.peek())) {
+            // Coalesce the consecutive self insert events in a single edit
+            text = new int[16];
+            int length = 0;
+            text[length++] = event.getCodePointAt(0);
+            while (decoder.hasNext() && isSelfInsert(decoder.peek())) {
+              if (length == text.length) {
+                text = Arrays.copyOf(text, length * 2);
+              }
+              text[length++] = decoder.next().getCodePointAt(0);
+            }
+            text = Arrays.copyOf(text, length);
+          }
         } else {
           return;
         }
       }
-      handler.handle(event);
+      if (cancelled != null) {
+        if (!cancelled.cancel()) {
+          return;
+        }
+      } else if (text != null) {
+        handler.insert(text);
+      } else {
+        handler.handle(event);
+      }
+    }
+  }
+
+  /**
+   * @return true when the event is a printable char inserted as is in the line
+   */
+  private static boolean isSelfInsert(KeyEvent event) {
+    if (event instanceof FunctionEvent || event instanceof PasteEvent || event.length() != 1) {
+      return false;
     }
+    int codePoint = event.getCodePointAt(0);
+    return codePoint >= 32 && codePoint != 127;
   }
 
   /**
@@ -144,6 +229,9 @@ public class Readline {
       interaction = new Interaction(conn, prompt, requestHandler, completionHandler);
     }
     interaction.install();
+    if (interaction.bracketedPaste) {
+      conn.write("\033[?2004h");
+    }
     conn.write(prompt);
     schedulePendingEvent();
   }
@@ -199,6 +287,17 @@ public class Readline {
     private int historyIndex = -1;
     private String currentPrompt;
     private boolean paused;
+    private final boolean bracketedPaste = Readline.this.bracketedPaste;
+    HistorySearch search;
+    Completion query;
+    volatile Completion completion;
+
+    // Scratch state reused by each refresh
+    private final LineBuffer renderSrc = new LineBuffer();
+    private final LineBuffer renderDst = new LineBuffer();
+    private final CodePointBuilder output = new CodePointBuilder();
+    private String renderedPrompt;
+    private int[] promptCodePoints;
 
     private Interaction(
         TtyConnection conn,
@@ -228,11 +327,32 @@ public class Readline {
         conn.setSizeHandler(prevSizeHandler);
         conn.setEventHandler(prevEventHandler);
       }
+      if (bracketedPaste) {
+        conn.write("\033[?2004l");
+      }
       requestHandler.accept(s);
       return true;
     }
 
-    private void handle(KeyEvent event) {
+    void handle(KeyEvent event) {
+
+      // A completion asking to display its candidates waits for the answer
+      if (query != null) {
+        query.answer(event.length() == 1 ? event.getCodePointAt(0) : -1);
+        return;
+      }
+
+      // A history search handles the events until it ends
+      if (search != null) {
+        search.handle(event);
+        return;
+      }
+
+      // A paste is inserted as is
+      if (event instanceof PasteEvent) {
+        paste(((PasteEvent) event).text());
+        return;
+      }
 
       // Very specific behavior that cannot be encapsulated in a function flow
       if (event.length() == 1) {
@@ -274,17 +394,70 @@ public class Readline {
           Logging.READLINE.warn("Unimplemented function " + fname.name());
         }
       } else {
-        LineBuffer buf = buffer.copy();
-        for (int i = 0;i < event.length();i++) {
-          int codePoint = event.getCodePointAt(i);
-          try {
-            buf.insert(codePoint);
-          } catch (IllegalArgumentException e) {
-            conn.stdoutHandler().accept(new int[]{'\007'});
+        int[] text = new int[event.length()];
+        for (int i = 0;i < text.length;i++) {
+          text[i] = event.getCodePointAt(i);
+        }
+        insert(text);
+      }
+    }
+
+    /**
+     * Insert code points in a single update of the buffer, the bell is rung for each code point that cannot be
+     * inserted.
+     */
+    private void insert(int[] text) {
+      if (query != null) {
+        // The code points answer the completion query until it ends, the remaining ones are inserted
+        int index = 0;
+        while (query != null && index < text.length) {
+          query.answer(text[index++]);
+        }
+        if (index == text.length) {
+          return;
+        }
+        text = Arrays.copyOfRange(text, index, text.length);
+      }
+      if (search != null) {
+        search.insert(text);
+        return;
+      }
+      LineBuffer buf = buffer.copy();
+      for (int codePoint : text) {
+        try {
+          buf.insert(codePoint);
+        } catch (IllegalArgumentException e) {
+          conn.stdoutHandler().accept(new int[]{'\007'});
+        }
+      }
+      refresh(buf);
+    }
+
+    /**
+     * Insert a pasted text in a single update of the buffer, the newlines are inserted as is and the other
+     * control chars are discarded.
+     */
+    private void paste(int[] text) {
+      int[] codePoints = new int[text.length];
+      int length = 0;
+      for (int i = 0;i < text.length;i++) {
+        int codePoint = text[i];
+        if (codePoint == '\r') {
+          if (i + 1 < text.length && text[i + 1] == '\n') {
+            continue;
           }
+          codePoint = '\n';
+        }
+        if (LineBuffer.isInsertable(codePoint)) {
+          codePoints[length++] = codePoint;
         }
-        refresh(buf);
       }
+      if (length < codePoints.length) {
+        codePoints = Arrays.copyOf(codePoints, length);
+      }
+      LineBuffer buf = buffer.copy();
+      buf.insert(codePoints);
+      refresh(buf);
     }
 
     void resize(int oldWith, int newWidth) {
@@ -342,6 +515,10 @@ public class Readline {
       return history;
     }
 
+    public History historyStore() {
+      return history;
+    }
+
     public int getHistoryIndex() {
       return historyIndex;
     }
@@ -370,12 +547,11 @@ public class Readline {
      * Redraw the current line.
      */
     public void redraw() {
-      LineBuffer toto = new LineBuffer(buffer.getCapacity());
-      toto.insert(Helper.toCodePoints(currentPrompt));
-      toto.insert(buffer.toArray());
-      toto.setCursor(currentPrompt.length() + buffer.getCursor());
-      LineBuffer abc = new LineBuffer(toto.getCapacity());
-      abc.update(toto, conn.stdoutHandler(), size.x());
+      renderDst.render(promptCodePoints(), buffer);
+      renderSrc.clear();
+      output.clear();
+      renderSrc.update(renderDst, output, size.x());
+      flushOutput();
     }
 
     /**
@@ -388,28 +564,44 @@ public class Readline {
       return this;
     }
 
+    /**
+     * Refresh the current prompt and buffer with the arguments.
+     */
+    void refresh(String prompt, LineBuffer update) {
+      int[] src = promptCodePoints();
+      currentPrompt = prompt;
+      refresh(src, promptCodePoints(), update, size.x());
+    }
+
     private void refresh(LineBuffer update, int width) {
-      LineBuffer copy3 = new LineBuffer(update.getCapacity());
-      final List<Integer> codePoints = new LinkedList<Integer>();
-      copy3.insert(Helper.toCodePoints(currentPrompt));
-      copy3.insert(buffer().toArray());
-      copy3.setCursor(currentPrompt.length() + buffer().getCursor());
-      LineBuffer copy2 = new LineBuffer(copy3.getCapacity());
-      copy2.insert(Helper.toCodePoints(currentPrompt));
-      copy2.insert(update.toArray());
-      copy2.setCursor(currentPrompt.length() + update.getCursor());
-      copy3.update(copy2, new Consumer<int[]>() {
-        @Override
-        public void accept(int[] data) {
-          for (int cp : data) {
-            codePoints.add(cp);
-          }
-        }
-      }, width);
-      conn.stdoutHandler().accept(Helper.convert(codePoints));
-      buffer.clear();
-      buffer.insert(update.toArray());
-      buffer.setCursor(update.getCursor());
+      int[] prompt = promptCodePoints();
+      refresh(prompt, prompt, update, width);
+    }
+
+    private void refresh(int[] srcPrompt, int[] dstPrompt, LineBuffer update, int width) {
+      renderSrc.render(srcPrompt, buffer);
+      renderDst.render(dstPrompt, update);
+      output.clear();
+      renderSrc.update(renderDst, output, width);
+      flushOutput();
+      buffer.set(update);
+    }
+
+    private void flushOutput() {
+      if (output.length() > 0) {
+        conn.stdoutHandler().accept(output.toArray());
+      }
+    }
+
+    /**
+     * @return the code points of the current prompt, they are computed again only when the prompt changes
+     */
+    private int[] promptCodePoints() {
+      if (promptCodePoints == null || !currentPrompt.equals(renderedPrompt)) {
+        renderedPrompt = currentPrompt;
+        promptCodePoints = Helper.toCodePoints(currentPrompt);
+      }
+      return promptCodePoints;
     }
 
     public void resume() {
@@ -480,7 +672,7 @@ public class Readline {
         } else {
           String raw = interaction.line.toString();
           if (interaction.line.getSize() > 0) {
-            addToHistory(interaction.line.toArray());
+            history.addFirst(interaction.line.toArray());
           }
           interaction.line.clear();
           interaction.conn.write("\n");
@@ -488,23 +680,5 @@ public class Readline {
         }
       }
     }
-
-      private void addToHistory(int[] command) {
-          // copy and save. https://github.com/alibaba/termd/issues/44
-          synchronized (Readline.class) {
-              List<int[]> tmp = new ArrayList<int[]>(history.size());
-              // add to first
-              tmp.add(command);
-
-              for (int[] c : history) {
-                  tmp.add(c);
-                  if (tmp.size() >= MAX_HISTORY_SIZE) {
-                      break;
-                  }
-              }
-              history = tmp;
-          }
-      }
-
   };
 }
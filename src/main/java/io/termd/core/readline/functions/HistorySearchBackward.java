@@ -1,8 +1,7 @@
 package io.termd.core.readline.functions;
 
-import java.util.List;
-
 import io.termd.core.readline.Function;
+import io.termd.core.readline.History;
 import io.termd.core.readline.LineBuffer;
 import io.termd.core.readline.Readline;
 import io.termd.core.util.LineBufferUtils;
@@ -23,7 +22,7 @@ public class HistorySearchBackward implements Function {
     public void apply(Readline.Interaction interaction) {
         LineBuffer buf = interaction.buffer().copy();
         int cursor = buf.getCursor();
-        List<int[]> history = interaction.history();
+        History history = interaction.historyStore();
 
         int curr = interaction.getHistoryIndex();
 
@@ -50,17 +49,14 @@ public class HistorySearchBackward implements Function {
             }
         } else {
             // 获取当前行首到光标的内容，在历史记录里查找匹配的。光标还是当前位置
-            int searchStart = curr + 1;
-            for (int i = searchStart; i < history.size(); ++i) {
-                int[] line = history.get(i);
-                if (LineBufferUtils.equals(buf, line)) {
-                    continue;
-                }
-                if (LineBufferUtils.matchBeforeCursor(buf, line)) {
-                    interaction.refresh(new LineBuffer().insert(line).setCursor(cursor));
-                    interaction.setHistoryIndex(i);
-                    break;
-                }
+            int[] prefix = buf.toArray();
+            int i = history.indexOfPrefix(prefix, cursor, curr + 1);
+            while (i >= 0 && LineBufferUtils.equals(buf, history.get(i))) {
+                i = history.indexOfPrefix(prefix, cursor, i + 1);
+            }
+            if (i >= 0) {
+                interaction.refresh(new LineBuffer().insert(history.get(i)).setCursor(cursor));
+                interaction.setHistoryIndex(i);
             }
         }
 
@@ -2,12 +2,11 @@
 package io.termd.core.readline.functions;
 
 import io.termd.core.readline.Function;
+import io.termd.core.readline.History;
 import io.termd.core.readline.LineBuffer;
 import io.termd.core.readline.Readline;
 import io.termd.core.util.LineBufferUtils;
 
-import java.util.List;
-
 /**
  *
  * @author hengyunabc 2018-11-17
@@ -25,7 +24,7 @@ public class HistorySearchForward implements Function {
         LineBuffer buf = interaction.buffer().copy();
         int cursor = buf.getCursor();
 
-        List<int[]> history = interaction.history();
+        History history = interaction.historyStore();
 
         int currentHistoryIndex = interaction.getHistoryIndex();
 
@@ -40,19 +39,14 @@ public class HistorySearchForward implements Function {
             interaction.setHistoryIndex(currentHistoryIndex - 1);
         } else {
             // 找到当前光标内容 和 历史记录 里匹配的项，光标仍然设置为当前的位置
-            int searchStart = currentHistoryIndex - 1;
-            for (int i = searchStart; i >= 0; --i) {
-                int[] line = history.get(i);
-
-                if (LineBufferUtils.equals(buf, line)) {
-                    continue;
-                }
-
-                if (LineBufferUtils.matchBeforeCursor(buf, line)) {
-                    interaction.refresh(new LineBuffer().insert(line).setCursor(cursor));
-                    interaction.setHistoryIndex(i);
-                    break;
-                }
+            int[] prefix = buf.toArray();
+            int i = history.lastIndexOfPrefix(prefix, cursor, currentHistoryIndex - 1);
+            while (i >= 0 && LineBufferUtils.equals(buf, history.get(i))) {
+                i = history.lastIndexOfPrefix(prefix, cursor, i - 1);
+            }
+            if (i >= 0) {
+                interaction.refresh(new LineBuffer().insert(history.get(i)).setCursor(cursor));
+                interaction.setHistoryIndex(i);
             }
         }
 
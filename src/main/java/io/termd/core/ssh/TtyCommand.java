@@ -20,6 +20,7 @@ import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.io.BinaryDecoder;
 import io.termd.core.io.BinaryEncoder;
+import io.termd.core.io.CodePointConsumer;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyConnectionSupport;
 import io.termd.core.tty.TtyEvent;
@@ -31,6 +32,7 @@ import org.apache.sshd.common.future.CloseFuture;
 import org.apache.sshd.common.future.SshFutureListener;
 import org.apache.sshd.common.io.IoInputStream;
 import org.apache.sshd.common.io.IoOutputStream;
+import org.apache.sshd.common.io.IoWriteFuture;
 import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
 import org.apache.sshd.server.AsyncCommand;
 import org.apache.sshd.server.ChannelSessionAware;
@@ -45,6 +47,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -57,6 +60,8 @@ import java.util.regex.Pattern;
 public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSessionAware {
 
   private static final Pattern LC_PATTERN = Pattern.compile("(?:\\p{Alpha}{2}_\\p{Alpha}{2}\\.)?([^@]+)(?:@.+)?");
+  private static final int LOW_WATERMARK = 32 * 1024;
+  private static final int HIGH_WATERMARK = 64 * 1024;
 
   private final Consumer<TtyConnection> handler;
   private final Charset defaultCharset;
@@ -75,6 +80,20 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   private ExitCallback exitCallback;
   private Connection conn;
   private IoOutputStream ioOut;
+
+  // The IoOutputStream accepts a single pending write, the output written meanwhile is queued
+  private final ArrayDeque<byte[]> pendingWrites = new ArrayDeque<byte[]>();
+  private int pendingBytes;
+  private int writingBytes;
+  private boolean writing;
+  private boolean writable = true;
+  private Integer pendingExit;
+  private final SshFutureListener<IoWriteFuture> writeListener = new SshFutureListener<IoWriteFuture>() {
+    @Override
+    public void operationComplete(IoWriteFuture future) {
+      writeCompleted(future);
+    }
+  };
   private long lastAccessedTime = System.currentTimeMillis();
 
   public TtyCommand(Charset defaultCharset, Consumer<TtyConnection> handler) {
@@ -121,7 +140,7 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     this.out = new Consumer<byte[]>() {
       @Override
       public void accept(byte[] bytes) {
-        out.write(new ByteArrayBuffer(bytes));
+        write(bytes);
       }
     };
   }
@@ -160,8 +179,11 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
 
     //
     eventDecoder = new TtyEventDecoder(vintr, vsusp, veof);
-    decoder = new BinaryDecoder(512, charset, eventDecoder);
-    stdout = new TtyOutputMode(new BinaryEncoder(charset, out));
+    decoder = new BinaryDecoder(512, charset, (CodePointConsumer) eventDecoder);
+    stdout = new TtyOutputMode(new BinaryEncoder(charset, out))
+        .setOnlcr(getOutputFlag(env, PtyMode.ONLCR, true))
+        .setOcrnl(getOutputFlag(env, PtyMode.OCRNL, false))
+        .setOnocr(getOutputFlag(env, PtyMode.ONOCR, false));
     term = env.getEnv().get("TERM");
     conn = new Connection();
 
@@ -175,6 +197,11 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     return controlChar != null ? controlChar : def;
   }
 
+  private boolean getOutputFlag(Environment env, PtyMode key, boolean def) {
+    Integer flag = env.getPtyModes().get(key);
+    return flag != null ? flag != 0 : def;
+  }
+
   public void updateSize(Environment env) {
     String columns = env.getEnv().get(Environment.ENV_COLUMNS);
     String lines = env.getEnv().get(Environment.ENV_LINES);
@@ -202,7 +229,98 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     close(0);
   }
 
+  private void write(byte[] bytes) {
+    boolean changed = false;
+    synchronized (pendingWrites) {
+      pendingBytes += bytes.length;
+      if (writable && pendingBytes >= HIGH_WATERMARK) {
+        writable = false;
+        changed = true;
+      }
+      if (writing) {
+        pendingWrites.add(bytes);
+        bytes = null;
+      } else {
+        writing = true;
+        writingBytes = bytes.length;
+      }
+    }
+    if (changed) {
+      writabilityChanged(false);
+    }
+    if (bytes != null) {
+      ioOut.write(new ByteArrayBuffer(bytes)).addListener(writeListener);
+    }
+  }
+
+  private void writeCompleted(IoWriteFuture future) {
+    byte[] next = null;
+    Integer exit = null;
+    boolean changed = false;
+    synchronized (pendingWrites) {
+      if (future.isWritten()) {
+        pendingBytes -= writingBytes;
+      } else {
+        pendingWrites.clear();
+        pendingBytes = 0;
+      }
+      if (pendingWrites.size() > 0) {
+        // Coalesce the queued output in a single write
+        next = pendingWrites.size() == 1 ? pendingWrites.poll() : new byte[pendingBytes];
+        if (pendingWrites.size() > 0) {
+          int pos = 0;
+          for (byte[] bytes : pendingWrites) {
+            System.arraycopy(bytes, 0, next, pos, bytes.length);
+            pos += bytes.length;
+          }
+          pendingWrites.clear();
+        }
+        writingBytes = next.length;
+      } else {
+        writing = false;
+        exit = pendingExit;
+        pendingExit = null;
+      }
+      if (!writable && pendingBytes <= LOW_WATERMARK) {
+        writable = true;
+        changed = true;
+      }
+    }
+    if (changed) {
+      writabilityChanged(true);
+    }
+    if (next != null) {
+      ioOut.write(new ByteArrayBuffer(next)).addListener(writeListener);
+    } else if (exit != null) {
+      doClose(exit);
+    }
+  }
+
+  private void writabilityChanged(boolean writable) {
+    Consumer<Boolean> handler = conn != null ? conn.getWritabilityHandler() : null;
+    if (handler != null) {
+      handler.accept(writable);
+    }
+  }
+
+  private boolean isWritable() {
+    synchronized (pendingWrites) {
+      return writable;
+    }
+  }
+
   private void close(final int exit) throws IOException {
+    synchronized (pendingWrites) {
+      if (writing) {
+        // Close once the pending output is written
+        pendingExit = exit;
+        return;
+      }
+    }
+    doClose(exit);
+  }
+
+  private void doClose(final int exit) {
     ioOut.close(false).addListener(new SshFutureListener<CloseFuture>() {
       @Override
       public void operationComplete(CloseFuture future) {
@@ -315,6 +433,11 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
       return stdout;
     }
 
+    @Override
+    public boolean isWritable() {
+      return TtyCommand.this.isWritable();
+    }
+
     @Override
     public void execute(Runnable task) {
       TtyCommand.this.execute(task);
@@ -18,7 +18,6 @@ package io.termd.core.ssh.netty;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -26,14 +25,15 @@ import io.netty.channel.ChannelPromise;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 import io.termd.core.util.Logging;
+import io.termd.core.util.WriteBatcher;
 import org.apache.sshd.common.future.CloseFuture;
 import org.apache.sshd.common.future.DefaultCloseFuture;
 import org.apache.sshd.common.io.IoHandler;
 import org.apache.sshd.common.io.IoService;
 import org.apache.sshd.common.io.IoSession;
 import org.apache.sshd.common.io.IoWriteFuture;
+import org.apache.sshd.common.util.Readable;
 import org.apache.sshd.common.util.buffer.Buffer;
-import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
 import org.apache.sshd.common.util.closeable.AbstractCloseable;
 
 import java.net.SocketAddress;
@@ -51,7 +51,7 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
   private final IoHandler handler;
   private ChannelHandlerContext context;
   private SocketAddress remoteAddr;
-  private ChannelFuture prev;
+  private WriteBatcher batcher;
   private final DefaultCloseFuture closeFuture = new DefaultCloseFuture(null);
   private final long id;
 
@@ -67,7 +67,7 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
       context = ctx;
       acceptor.channelGroup.add(ctx.channel());
       acceptor.ioService.sessions.put(id, NettyIoSession.this);
-      prev = context.newPromise().setSuccess();
+      batcher = new WriteBatcher(ctx);
       remoteAddr = context.channel().remoteAddress();
       acceptor.factory.handlerBridge.sessionCreated(handler, NettyIoSession.this);
     }
@@ -81,10 +81,22 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-      ByteBuf buf = (ByteBuf) msg;
-      byte[] bytes = new byte[buf.readableBytes()];
-      buf.getBytes(0, bytes);
-      acceptor.factory.handlerBridge.messageReceived(handler, NettyIoSession.this, new ByteArrayBuffer(bytes));
+      final ByteBuf buf = (ByteBuf) msg;
+      try {
+        // SSHD copies the message into its decoder buffer before returning, so a view is enough
+        acceptor.factory.handlerBridge.messageReceived(handler, NettyIoSession.this, new Readable() {
+          @Override
+          public int available() {
+            return buf.readableBytes();
+          }
+          @Override
+          public void getRawBytes(byte[] data, int offset, int len) {
+            buf.readBytes(data, offset, len);
+          }
+        });
+      } finally {
+        buf.release();
+      }
     }
 
     @Override
@@ -129,20 +141,11 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
 
   @Override
   public IoWriteFuture write(Buffer buffer) {
-    final ByteBuf buf = Unpooled.buffer(buffer.available());
-    buf.writeBytes(buffer.array(), buffer.rpos(), buffer.available());
+    // Wrap the packet without copying it, SSHD does not reuse a written buffer (its NIO2 transport wraps it too)
+    final ByteBuf buf = Unpooled.wrappedBuffer(buffer.array(), buffer.rpos(), buffer.available());
     final NettyIoWriteFuture msg = new NettyIoWriteFuture();
-    final ChannelPromise next = context.newPromise();
-    prev.addListener(new GenericFutureListener<Future<? super Void>>() {
-      @Override
-      public void operationComplete(Future<? super Void> future) throws Exception {
-        if (context != null) {
-          context.writeAndFlush(buf, next);
-        }
-      }
-    });
-    prev = next;
-    next.addListener(new GenericFutureListener<Future<? super Void>>() {
+    ChannelPromise promise = context.newPromise();
+    promise.addListener(new GenericFutureListener<Future<? super Void>>() {
       @Override
       public void operationComplete(Future<? super Void> future) throws Exception {
         if (future.isSuccess()) {
@@ -152,6 +155,8 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
         }
       }
     });
+    // The batcher preserves the order of the packets, SSHD writes them in the order they are encrypted
+    batcher.write(buf, promise);
     return msg;
   }
 
@@ -162,8 +167,8 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
 
   @Override
   protected CloseFuture doCloseGracefully() {
-    context.
-        writeAndFlush(Unpooled.EMPTY_BUFFER).
+    ChannelPromise promise = context.newPromise();
+    promise.
         addListener(ChannelFutureListener.CLOSE).
         addListener(new GenericFutureListener<Future<? super Void>>() {
           @Override
@@ -171,6 +176,7 @@ public class NettyIoSession extends AbstractCloseable implements IoSession {
             closeFuture.setClosed();
           }
         });
+    batcher.write(Unpooled.EMPTY_BUFFER, promise);
     return closeFuture;
   }
 
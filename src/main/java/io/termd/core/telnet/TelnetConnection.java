@@ -15,6 +15,10 @@
  */
 package io.termd.core.telnet;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ByteProcessor;
+
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -40,6 +44,13 @@ public abstract class TelnetConnection {
   boolean paramsIac;
   boolean sendBinary;
   boolean receiveBinary;
+  private final ByteProcessor receiver = new ByteProcessor() {
+    @Override
+    public boolean process(byte value) {
+      status.handle(TelnetConnection.this, value);
+      return true;
+    }
+  };
   final TelnetHandler handler;
 
   public TelnetConnection(TelnetHandler handler) {
@@ -65,6 +76,27 @@ public abstract class TelnetConnection {
 
   public abstract void close();
 
+  /**
+   * Flush the data sent to the client, the default implementation sends data immediately and does nothing.
+   */
+  public void flush() {
+  }
+
+  /**
+   * Stop or resume reading data from the client, the default implementation does nothing.
+   *
+   * @param paused true to stop reading, false to resume
+   */
+  public void setReadPaused(boolean paused) {
+  }
+
+  /**
+   * @return true when data can be sent without being buffered, the default implementation returns true
+   */
+  public boolean isWritable() {
+    return true;
+  }
+
   /**
    * Write a <i>do</i> option request to the client.
    *
@@ -101,6 +133,29 @@ public abstract class TelnetConnection {
 
   protected abstract void send(byte[] data);
 
+  /**
+   * Send a buffer to the client, the ownership of the buffer is transferred to this method. The default
+   * implementation copies the buffer and calls {@link #send(byte[])}.
+   *
+   * @param data the data to send
+   */
+  protected void send(ByteBuf data) {
+    try {
+      byte[] bytes = new byte[data.readableBytes()];
+      data.readBytes(bytes);
+      send(bytes);
+    } finally {
+      data.release();
+    }
+  }
+
+  /**
+   * @return the allocator of the buffers written to this connection
+   */
+  public ByteBufAllocator alloc() {
+    return ByteBufAllocator.DEFAULT;
+  }
+
   public void receive(byte[] data) {
     for (byte b : data) {
       status.handle(this, b);
@@ -108,6 +163,16 @@ public abstract class TelnetConnection {
     flushDataIfNecessary();
   }
 
+  /**
+   * Receive data from the client, the readable bytes of the buffer are processed in place without being copied.
+   * The buffer is not released.
+   *
+   * @param data the received data
+   */
+  public void receive(ByteBuf data) {
+    data.forEachByte(receiver);
+    flushDataIfNecessary();
+  }
 
   /**
    * Write data to the client, escaping data if necessary or truncating it. The original buffer can
@@ -140,6 +205,40 @@ public abstract class TelnetConnection {
     }
   }
 
+  /**
+   * Write a buffer to the client, escaping data if necessary. The ownership of the buffer is transferred
+   * to this method.
+   *
+   * @param data the data to write
+   */
+  public final void write(ByteBuf data) {
+    if (sendBinary) {
+      int index = data.indexOf(data.readerIndex(), data.writerIndex(), BYTE_IAC);
+      if (index != -1) {
+        ByteBuf escaped = alloc().buffer(data.readableBytes() + 16);
+        try {
+          while (index != -1) {
+            escaped.writeBytes(data, index + 1 - data.readerIndex());
+            escaped.writeByte(BYTE_IAC);
+            index = data.indexOf(data.readerIndex(), data.writerIndex(), BYTE_IAC);
+          }
+          escaped.writeBytes(data);
+        } finally {
+          data.release();
+        }
+        data = escaped;
+      }
+    }
+    send(data);
+  }
+
+  /**
+   * Signal the writability of the connection changed, this is called by the transport.
+   */
+  public void onWritabilityChanged() {
+    handler.onWritabilityChanged(isWritable());
+  }
+
   protected void onClose() {
     handler.onClose();
   }
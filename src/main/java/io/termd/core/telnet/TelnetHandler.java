@@ -35,6 +35,13 @@ public class TelnetHandler {
    */
   protected void onClose() {}
 
+  /**
+   * The writability of the telnet connection changed.
+   *
+   * @param writable the new writability
+   */
+  protected void onWritabilityChanged(boolean writable) {}
+
   /**
    * Process data sent by the client.
    *
@@ -16,8 +16,11 @@
 
 package io.termd.core.telnet;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.function.Supplier;
 import io.termd.core.tty.ReadBuffer;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
@@ -52,6 +55,7 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
   private Consumer<Vector> sizeHandler;
   private Consumer<String> termHandler;
   private Consumer<Void> closeHandler;
+  private Consumer<Boolean> writabilityHandler;
   protected TelnetConnection conn;
   private final Charset charset;
   private final TtyEventDecoder eventDecoder = new TtyEventDecoder(3, 26, 4);
@@ -76,13 +80,24 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     this.handler = handler;
     this.size = new Vector();
     this.decoder = new BinaryDecoder(512, TelnetCharset.INSTANCE, readBuffer);
-    this.encoder = new BinaryEncoder(charset, new Consumer<byte[]>() {
+    this.encoder = new BinaryEncoder(charset, new Supplier<ByteBufAllocator>() {
       @Override
-      public void accept(byte[] data) {
+      public ByteBufAllocator get() {
+        return conn.alloc();
+      }
+    }, new Consumer<ByteBuf>() {
+      @Override
+      public void accept(ByteBuf data) {
         conn.write(data);
       }
     });
     this.stdout = new TtyOutputMode(encoder);
+    readBuffer.setPauseHandler(new Consumer<Boolean>() {
+      @Override
+      public void accept(Boolean paused) {
+        conn.setReadPaused(paused);
+      }
+    });
   }
 
   @Override
@@ -246,6 +261,16 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     return stdout;
   }
 
+  @Override
+  public Consumer<Boolean> getWritabilityHandler() {
+    return writabilityHandler;
+  }
+
+  @Override
+  public void setWritabilityHandler(Consumer<Boolean> handler) {
+    writabilityHandler = handler;
+  }
+
   @Override
   public void setCloseHandler(Consumer<Void> closeHandler) {
     this.closeHandler = closeHandler;
@@ -263,6 +288,26 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     }
   }
 
+  /**
+   * Flush the output batched by the underlying telnet connection.
+   */
+  public void flush() {
+    conn.flush();
+  }
+
+  @Override
+  public boolean isWritable() {
+    return conn.isWritable();
+  }
+
+  @Override
+  protected void onWritabilityChanged(boolean writable) {
+    Consumer<Boolean> handler = writabilityHandler;
+    if (handler != null) {
+      handler.accept(writable);
+    }
+  }
+
   @Override
   public void close() {
     conn.close();
@@ -16,11 +16,14 @@
 
 package io.termd.core.telnet.netty;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.termd.core.telnet.TelnetConnection;
 import io.termd.core.telnet.TelnetHandler;
+import io.termd.core.util.WriteBatcher;
 
 import java.util.concurrent.TimeUnit;
 
@@ -30,10 +33,12 @@ import java.util.concurrent.TimeUnit;
 public class NettyTelnetConnection extends TelnetConnection {
 
   final ChannelHandlerContext context;
+  private final WriteBatcher batcher;
 
   public NettyTelnetConnection(TelnetHandler handler, ChannelHandlerContext context) {
     super(handler);
     this.context = context;
+    this.batcher = new WriteBatcher(context);
   }
 
   @Override
@@ -49,7 +54,32 @@ public class NettyTelnetConnection extends TelnetConnection {
   // Not properly synchronized, but ok for now
   @Override
   protected void send(byte[] data) {
-    context.writeAndFlush(Unpooled.buffer().writeBytes(data));
+    batcher.write(Unpooled.buffer().writeBytes(data));
+  }
+
+  @Override
+  protected void send(ByteBuf data) {
+    batcher.write(data);
+  }
+
+  @Override
+  public void flush() {
+    batcher.flush();
+  }
+
+  @Override
+  public void setReadPaused(boolean paused) {
+    context.channel().config().setAutoRead(!paused);
+  }
+
+  @Override
+  public boolean isWritable() {
+    return context.channel().isWritable();
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return context.alloc();
   }
 
   @Override
@@ -59,6 +89,6 @@ public class NettyTelnetConnection extends TelnetConnection {
 
   @Override
   public void close() {
-    context.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    batcher.write(Unpooled.EMPTY_BUFFER, context.newPromise().addListener(ChannelFutureListener.CLOSE));
   }
 }
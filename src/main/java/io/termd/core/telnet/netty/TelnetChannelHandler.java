@@ -41,10 +41,7 @@ public class TelnetChannelHandler extends ChannelInboundHandlerAdapter {
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
     ByteBuf buf = (ByteBuf) msg;
     try {
-      int size = buf.readableBytes();
-      byte[] data = new byte[size];
-      buf.getBytes(0, data);
-      conn.receive(data);
+      conn.receive(buf);
     } finally {
       buf.release();
     }
@@ -56,6 +53,12 @@ public class TelnetChannelHandler extends ChannelInboundHandlerAdapter {
     conn.onInit();
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    conn.onWritabilityChanged();
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     conn.onClose();
@@ -23,27 +23,92 @@ import java.util.Queue;
 import java.util.concurrent.Executor;
 
 /**
+ * Buffers the code points received while no read handler is set.<p/>
+ *
+ * The buffer counts the queued code points, when this count reaches the high watermark the pause handler
+ * is called with {@code true} so the transport can stop reading, when the count falls back to the
+ * low watermark it is called with {@code false} so the transport can resume reading.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class ReadBuffer implements Consumer<int[]> {
 
+  public static final int DEFAULT_LOW_WATERMARK = 16 * 1024;
+  public static final int DEFAULT_HIGH_WATERMARK = 64 * 1024;
+
   private final Queue<int[]> queue = new ArrayDeque<int[]>(10);
   private final Executor executor;
+  private final int lowWatermark;
+  private final int highWatermark;
   private volatile Consumer<int[]> readHandler;
+  private Consumer<Boolean> pauseHandler;
+  private int size;
+  private boolean paused;
+  private boolean draining;
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      draining = false;
+      drain();
+    }
+  };
 
   public ReadBuffer(Executor executor) {
+    this(executor, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+  }
+
+  public ReadBuffer(Executor executor, int lowWatermark, int highWatermark) {
+    if (lowWatermark < 0 || highWatermark < lowWatermark) {
+      throw new IllegalArgumentException("Invalid watermarks low=" + lowWatermark + " high=" + highWatermark);
+    }
     this.executor = executor;
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
   }
 
   @Override
   public void accept(int[] data) {
+    if (readHandler != null && queue.isEmpty()) {
+      readHandler.accept(data);
+      return;
+    }
     queue.add(data);
-    while (readHandler != null && queue.size() > 0) {
-      data = queue.poll();
-      if (data != null) {
-        readHandler.accept(data);
+    size += data.length;
+    if (!paused && size >= highWatermark) {
+      paused = true;
+      if (pauseHandler != null) {
+        pauseHandler.accept(true);
       }
     }
+    drain();
+  }
+
+  /**
+   * @return the number of code points queued
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true when the buffer asked the transport to stop reading
+   */
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public Consumer<Boolean> getPauseHandler() {
+    return pauseHandler;
+  }
+
+  /**
+   * Set the handler called with {@code true} when the high watermark is reached and with {@code false}
+   * when the low watermark is reached.
+   *
+   * @param pauseHandler the pause handler
+   */
+  public void setPauseHandler(Consumer<Boolean> pauseHandler) {
+    this.pauseHandler = pauseHandler;
   }
 
   public Consumer<int[]> getReadHandler() {
@@ -64,19 +129,30 @@ public class ReadBuffer implements Consumer<int[]> {
   }
 
   private void drainQueue() {
-    if (queue.size() > 0 && readHandler != null) {
-      executor.execute(new Runnable() {
-        @Override
-        public void run() {
-          if (readHandler != null) {
-            final int[] data = queue.poll();
-            if (data != null) {
-              readHandler.accept(data);
-              drainQueue();
-            }
-          }
+    if (queue.size() > 0 && readHandler != null && !draining) {
+      draining = true;
+      executor.execute(drainTask);
+    }
+  }
+
+  /**
+   * Deliver the queued chunks as long as there is a read handler.
+   */
+  private void drain() {
+    Consumer<int[]> handler;
+    while ((handler = readHandler) != null) {
+      int[] data = queue.poll();
+      if (data == null) {
+        break;
+      }
+      size -= data.length;
+      if (paused && size <= lowWatermark) {
+        paused = false;
+        if (pauseHandler != null) {
+          pauseHandler.accept(false);
         }
-      });
+      }
+      handler.accept(data);
     }
   }
 }
@@ -86,6 +86,23 @@ public interface TtyConnection {
    */
   Consumer<int[]> stdoutHandler();
 
+  /**
+   * @return false when the client does not consume the output fast enough, the application should stop writing
+   *         to the {@link #stdoutHandler()} until the {@link #setWritabilityHandler(Consumer) writability handler}
+   *         is called with {@code true}. A connection that does not track its writability can extend
+   *         {@link TtyConnectionSupport} which is always writable.
+   */
+  boolean isWritable();
+
+  Consumer<Boolean> getWritabilityHandler();
+
+  /**
+   * Set an handler called with the new writability when it changes.
+   *
+   * @param handler the writability handler
+   */
+  void setWritabilityHandler(Consumer<Boolean> handler);
+
   void setCloseHandler(Consumer<Void> closeHandler);
 
   Consumer<Void> getCloseHandler();
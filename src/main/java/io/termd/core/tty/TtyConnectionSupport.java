@@ -1,11 +1,15 @@
 package io.termd.core.tty;
 
+import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
 
 /**
  * @author bw on 25/10/2016.
  */
 public abstract class TtyConnectionSupport implements TtyConnection {
+
+    private volatile Consumer<Boolean> writabilityHandler;
+
     @Override
     public void close(int exit) {
         close();
@@ -22,4 +26,30 @@ public abstract class TtyConnectionSupport implements TtyConnection {
         stdoutHandler().accept(codePoints);
         return this;
     }
+
+    /**
+     * Flush the output of this connection. A connection may batch the data written to the {@link #stdoutHandler()}
+     * until the current task completes, a task that needs its output to be sent before it completes
+     * should call this method. Output is not batched by default, this method does nothing.
+     */
+    public void flush() {
+    }
+
+    /**
+     * The connection is always writable by default.
+     */
+    @Override
+    public boolean isWritable() {
+        return true;
+    }
+
+    @Override
+    public Consumer<Boolean> getWritabilityHandler() {
+        return writabilityHandler;
+    }
+
+    @Override
+    public void setWritabilityHandler(Consumer<Boolean> handler) {
+        writabilityHandler = handler;
+    }
 }
@@ -19,11 +19,20 @@ package io.termd.core.tty;
 
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.io.CodePointConsumer;
+
+import java.util.Arrays;
 
 /**
+ * Decodes the control characters of the tty input into {@link TtyEvent}, the other code points are handed to the
+ * read handler.<p/>
+ *
+ * The decoder is also a {@link CodePointConsumer} so it can consume the reused array of a
+ * {@link io.termd.core.io.BinaryDecoder} directly.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class TtyEventDecoder implements Consumer<int[]> {
+public class TtyEventDecoder implements Consumer<int[]>, CodePointConsumer {
 
   private Consumer<int[]> readHandler;
   private BiConsumer<TtyEvent, Integer> eventHandler;
@@ -57,40 +66,51 @@ public class TtyEventDecoder implements Consumer<int[]> {
 
   @Override
   public void accept(int[] data) {
-    if (eventHandler != null) {
-      int index = 0;
-      while (index < data.length) {
-        int val = data[index];
-        TtyEvent event = null;
-        if (val == vintr) {
-          event = TtyEvent.INTR;
-        } else if (val == vsusp) {
-          event = TtyEvent.SUSP;
-        } else if (val == veof) {
-          event = TtyEvent.EOF;
-        }
-        if (event != null) {
-          if (eventHandler != null) {
-            if (readHandler != null) {
-              int[] a = new int[index];
-              if (index > 0) {
-                System.arraycopy(data, 0, a, 0, index);
-                readHandler.accept(a);
-              }
-            }
-            eventHandler.accept(event, val);
-            int[] a = new int[data.length - index - 1];
-            System.arraycopy(data, index + 1, a, 0, a.length);
-            data = a;
-            index = 0;
-            continue;
-          }
-        }
-        index++;
+    decode(data, 0, data.length, true);
+  }
+
+  /**
+   * Decode a slice of code points, the slice is copied before being handed to the read handler.
+   */
+  @Override
+  public void accept(int[] codePoints, int offset, int length) {
+    decode(codePoints, offset, length, false);
+  }
+
+  /**
+   * Scan the code points once and hand the slices between the control characters to the read handler.
+   *
+   * @param owned true when the array can be handed to the read handler as is
+   */
+  private void decode(int[] codePoints, int offset, int length, boolean owned) {
+    int end = offset + length;
+    int from = offset;
+    for (int index = offset;index < end && eventHandler != null;index++) {
+      int val = codePoints[index];
+      TtyEvent event;
+      if (val == vintr) {
+        event = TtyEvent.INTR;
+      } else if (val == vsusp) {
+        event = TtyEvent.SUSP;
+      } else if (val == veof) {
+        event = TtyEvent.EOF;
+      } else {
+        continue;
       }
+      read(codePoints, from, index, owned);
+      eventHandler.accept(event, val);
+      from = index + 1;
     }
-    if (readHandler != null && data.length > 0) {
-      readHandler.accept(data);
+    read(codePoints, from, end, owned);
+  }
+
+  private void read(int[] codePoints, int from, int to, boolean owned) {
+    if (readHandler != null && from < to) {
+      if (owned && from == 0 && to == codePoints.length) {
+        readHandler.accept(codePoints);
+      } else {
+        readHandler.accept(Arrays.copyOfRange(codePoints, from, to));
+      }
     }
   }
 }
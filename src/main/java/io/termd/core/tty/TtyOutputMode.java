@@ -20,45 +20,154 @@ package io.termd.core.tty;
 import io.termd.core.function.Consumer;
 
 /**
+ * Performs the output post processing of a tty, the supported flags are those of {@code stty}:
+ *
+ * <ul>
+ *   <li>{@code onlcr}: translate newline to carriage return-newline, enabled by default</li>
+ *   <li>{@code ocrnl}: translate carriage return to newline</li>
+ *   <li>{@code onocr}: do not output carriage return at the first column</li>
+ *   <li>{@code tab3}: expand tabs to spaces</li>
+ * </ul>
+ *
+ * Each call produces at most one call to the downstream handler, the data is passed unchanged when no
+ * translation applies.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class TtyOutputMode implements Consumer<int[]> {
 
   private final Consumer<int[]> readHandler;
+  private boolean onlcr = true;
+  private boolean ocrnl;
+  private boolean onocr;
+  private boolean expandTabs;
+  private int column;
 
   public TtyOutputMode(Consumer<int[]> readHandler) {
     this.readHandler = readHandler;
   }
 
+  public boolean getOnlcr() {
+    return onlcr;
+  }
+
+  public TtyOutputMode setOnlcr(boolean onlcr) {
+    this.onlcr = onlcr;
+    return this;
+  }
+
+  public boolean getOcrnl() {
+    return ocrnl;
+  }
+
+  public TtyOutputMode setOcrnl(boolean ocrnl) {
+    this.ocrnl = ocrnl;
+    return this;
+  }
+
+  public boolean getOnocr() {
+    return onocr;
+  }
+
+  public TtyOutputMode setOnocr(boolean onocr) {
+    this.onocr = onocr;
+    return this;
+  }
+
+  public boolean getExpandTabs() {
+    return expandTabs;
+  }
+
+  public TtyOutputMode setExpandTabs(boolean expandTabs) {
+    this.expandTabs = expandTabs;
+    return this;
+  }
+
+  /**
+   * @return the column of the cursor as tracked by this output mode
+   */
+  public int column() {
+    return column;
+  }
+
   @Override
   public void accept(int[] data) {
     if (readHandler != null && data.length > 0) {
-      int prev = 0;
-      int ptr = 0;
-      while (ptr < data.length) {
-        // Simple implementation that works only on system that uses /n as line terminator
-        // equivalent to 'stty onlcr'
-        int cp = data[ptr];
-        if (cp == '\n') {
-          if (ptr > prev) {
-            sendChunk(data, prev, ptr);
-          }
-          readHandler.accept(new int[]{'\r','\n'});
-          prev = ++ptr;
-        } else {
-          ptr++;
-        }
-      }
-      if (ptr > prev) {
-        sendChunk(data, prev, ptr);
+      int start = column;
+      int len = translate(data, null);
+      if (len < 0) {
+        readHandler.accept(data);
+      } else {
+        column = start;
+        int[] buf = new int[len];
+        translate(data, buf);
+        readHandler.accept(buf);
       }
     }
   }
 
-  private void sendChunk(int[] data, int prev, int ptr) {
-    int len = ptr - prev;
-    int[] buf = new int[len];
-    System.arraycopy(data, prev, buf, 0, len);
-    readHandler.accept(buf);
+  /**
+   * Translate the data into the {@code dst} array and update the column. When {@code dst} is null only the
+   * output length is computed.
+   *
+   * @return the output length or {@code -1} when the output is the same than the data
+   */
+  private int translate(int[] data, int[] dst) {
+    boolean changed = false;
+    int len = 0;
+    for (int cp : data) {
+      switch (cp) {
+        case '\n':
+          if (onlcr) {
+            if (dst != null) {
+              dst[len] = '\r';
+            }
+            len++;
+            column = 0;
+            changed = true;
+          }
+          break;
+        case '\r':
+          if (onocr && column == 0) {
+            changed = true;
+            continue;
+          }
+          if (ocrnl) {
+            cp = '\n';
+            changed = true;
+          } else {
+            column = 0;
+          }
+          break;
+        case '\t':
+          int spaces = 8 - (column & 7);
+          column += spaces;
+          if (expandTabs) {
+            if (dst != null) {
+              for (int i = 0;i < spaces;i++) {
+                dst[len + i] = ' ';
+              }
+            }
+            len += spaces;
+            changed = true;
+            continue;
+          }
+          break;
+        case '\b':
+          if (column > 0) {
+            column--;
+          }
+          break;
+        default:
+          if (cp >= 0x20 && cp != 0x7F) {
+            column++;
+          }
+      }
+      if (dst != null) {
+        dst[len] = cp;
+      }
+      len++;
+    }
+    return changed ? len : -1;
   }
 }
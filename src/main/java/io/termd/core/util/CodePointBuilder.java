@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.termd.core.function.Consumer;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of code points, the builder can be cleared and reused to avoid allocations. As a
+ * consumer it appends the arrays it receives.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class CodePointBuilder implements Consumer<int[]> {
+
+  private int[] codePoints;
+  private int length;
+
+  public CodePointBuilder() {
+    this(16);
+  }
+
+  public CodePointBuilder(int capacity) {
+    codePoints = new int[capacity];
+  }
+
+  public CodePointBuilder append(int codePoint) {
+    ensureCapacity(length + 1);
+    codePoints[length++] = codePoint;
+    return this;
+  }
+
+  public CodePointBuilder append(int... codePoints) {
+    return append(codePoints, 0, codePoints.length);
+  }
+
+  public CodePointBuilder append(int[] codePoints, int offset, int length) {
+    ensureCapacity(this.length + length);
+    System.arraycopy(codePoints, offset, this.codePoints, this.length, length);
+    this.length += length;
+    return this;
+  }
+
+  /**
+   * Append the code points of a char sequence.
+   *
+   * @param s the char sequence
+   * @return this builder
+   */
+  public CodePointBuilder append(CharSequence s) {
+    ensureCapacity(length + s.length());
+    for (int offset = 0;offset < s.length();) {
+      int codePoint = Character.codePointAt(s, offset);
+      codePoints[length++] = codePoint;
+      offset += Character.charCount(codePoint);
+    }
+    return this;
+  }
+
+  @Override
+  public void accept(int[] codePoints) {
+    append(codePoints, 0, codePoints.length);
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public int codePointAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Wrong index " + index);
+    }
+    return codePoints[index];
+  }
+
+  /**
+   * Remove the last code point.
+   *
+   * @return the removed code point
+   * @throws IndexOutOfBoundsException when the builder is empty
+   */
+  public int removeLast() {
+    if (length == 0) {
+      throw new IndexOutOfBoundsException("Empty builder");
+    }
+    return codePoints[--length];
+  }
+
+  /**
+   * Reset the length to zero, the capacity is retained.
+   *
+   * @return this builder
+   */
+  public CodePointBuilder clear() {
+    length = 0;
+    return this;
+  }
+
+  /**
+   * @return a copy of the code points
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(codePoints, length);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > codePoints.length) {
+      codePoints = Arrays.copyOf(codePoints, Math.max(capacity, codePoints.length * 2 + 1));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new String(codePoints, 0, length);
+  }
+}
@@ -53,13 +53,13 @@ public class Helper {
    * @return the code points
    */
   public static int[] toCodePoints(String s) {
-    List<Integer> codePoints = new ArrayList<Integer>();
-    for (int offset = 0; offset < s.length();) {
+    int[] codePoints = new int[s.codePointCount(0, s.length())];
+    for (int offset = 0, index = 0;index < codePoints.length;index++) {
       int cp = s.codePointAt(offset);
-      codePoints.add(cp);
+      codePoints[index] = cp;
       offset += Character.charCount(cp);
     }
-    return convert(codePoints);
+    return codePoints;
   }
 
   /**
@@ -72,13 +72,10 @@ public class Helper {
     return new String(codePoints, 0, codePoints.length);
   }
 
-  public static void appendCodePoints(int[] codePoints, final StringBuilder sb) {
-    consumeTo(codePoints, new IntConsumer() {
-      @Override
-      public void accept(int cp) {
-        sb.appendCodePoint(cp);
-      }
-    });
+  public static void appendCodePoints(int[] codePoints, StringBuilder sb) {
+    for (int codePoint : codePoints) {
+      sb.appendCodePoint(codePoint);
+    }
   }
 
   public static void consumeTo(int[] i, IntConsumer consumer) {
@@ -179,22 +176,22 @@ public class Helper {
     int max = max(completions);
     int row = size.x() / (max + 1);
     int count = 0;
-    StringBuilder sb = new StringBuilder();
+    CodePointBuilder block = new CodePointBuilder(completions.size() * (max + 1) + 1);
     for (int[] completion : completions) {
-      Helper.appendCodePoints(completion, sb);
+      block.append(completion);
       for (int i = completion.length;i < max;i++) {
-        sb.append(' ');
+        block.append(' ');
       }
       count++;
       if (count < row) {
-        sb.append(' ');
+        block.append(' ');
       } else {
-        sb.append('\n');
+        block.append('\n');
         count = 0;
       }
     }
-    sb.append("\n");
-    return Helper.toCodePoints(sb.toString());
+    block.append('\n');
+    return block.toArray();
   }
 
   /**
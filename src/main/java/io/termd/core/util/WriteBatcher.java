@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesce the messages written to a channel.<p/>
+ *
+ * Messages are queued in call order and written by a single event loop task that flushes the channel once
+ * when the queue is drained, so the writes performed during a task result in a single flush instead of one per
+ * write. A message written from the event loop when nothing is queued is written immediately and only its flush
+ * is deferred, so the channel writability accounts for it. The channel is flushed before the end of the batch
+ * when it becomes unwritable, the batch size is therefore bounded by the channel write buffer high water mark.<p/>
+ *
+ * The batch is drained after the current event loop task, an event loop task that needs its output to be sent
+ * before it completes must call {@link #flush()}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class WriteBatcher {
+
+  private static class Write {
+    final Object msg;
+    final ChannelPromise promise;
+    Write(Object msg, ChannelPromise promise) {
+      this.msg = msg;
+      this.promise = promise;
+    }
+  }
+
+  private final ChannelHandlerContext context;
+  private final Queue<Write> pending = new ConcurrentLinkedQueue<Write>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private boolean unflushed;
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  public WriteBatcher(ChannelHandlerContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Queue a message, it will be written and flushed by the next batch.
+   *
+   * @param msg the message to write
+   */
+  public void write(Object msg) {
+    write(msg, null);
+  }
+
+  /**
+   * Queue a message, it will be written and flushed by the next batch.
+   *
+   * @param msg the message to write
+   * @param promise the promise notified when the message is written, can be null
+   */
+  public void write(Object msg, ChannelPromise promise) {
+    if (context.executor().inEventLoop() && pending.isEmpty()) {
+      doWrite(msg, promise);
+    } else {
+      pending.add(new Write(msg, promise));
+    }
+    if (scheduled.compareAndSet(false, true)) {
+      context.executor().execute(drainTask);
+    }
+  }
+
+  /**
+   * Write and flush the queued messages, immediately when called from the event loop otherwise
+   * as soon as possible.
+   */
+  public void flush() {
+    if (context.executor().inEventLoop()) {
+      drain();
+    } else {
+      context.executor().execute(drainTask);
+    }
+  }
+
+  private void doWrite(Object msg, ChannelPromise promise) {
+    if (promise != null) {
+      context.write(msg, promise);
+    } else {
+      context.write(msg);
+    }
+    unflushed = true;
+    if (!context.channel().isWritable()) {
+      unflushed = false;
+      context.flush();
+    }
+  }
+
+  private void drain() {
+    scheduled.set(false);
+    Write write;
+    while ((write = pending.poll()) != null) {
+      doWrite(write.msg, write.promise);
+    }
+    if (unflushed) {
+      unflushed = false;
+      context.flush();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * Compares the direct UTF-8 decoding of {@link BinaryDecoder} with the {@link CharsetDecoder} based decoding.
+ *
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main BinaryDecoderBenchmark}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class BinaryDecoderBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Same as UTF-8 but not recognized by the decoder, so the {@link CharsetDecoder} path is used.
+   */
+  private static final Charset WRAPPED_UTF_8 = new Charset("X-WRAPPED-UTF-8", new String[0]) {
+    @Override
+    public boolean contains(Charset cs) {
+      return UTF_8.contains(cs);
+    }
+    @Override
+    public CharsetDecoder newDecoder() {
+      return UTF_8.newDecoder();
+    }
+    @Override
+    public CharsetEncoder newEncoder() {
+      return UTF_8.newEncoder();
+    }
+  };
+
+  @Param({"ascii", "mixed"})
+  public String content;
+
+  @Param({"true", "false"})
+  public boolean direct;
+
+  private byte[] data;
+  private BinaryDecoder decoder;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 4096) {
+      if ("ascii".equals(content)) {
+        sb.append("ls -la /usr/local/bin | grep termd\n");
+      } else {
+        sb.append("echo été € 你好 ").appendCodePoint(0x1F600).append('\n');
+      }
+    }
+    data = sb.toString().getBytes(UTF_8);
+    decoder = new BinaryDecoder(512, direct ? UTF_8 : WRAPPED_UTF_8, new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        blackhole.consume(codePoints[offset + length - 1]);
+      }
+    });
+  }
+
+  @Benchmark
+  public void decode() {
+    decoder.write(data, 0, data.length);
+  }
+}
@@ -1,6 +1,11 @@
 package io.termd.core.io;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.termd.core.function.Consumer;
+import io.termd.core.function.Supplier;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
@@ -9,8 +14,11 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -106,4 +114,207 @@ public class BinaryEncodingTest {
     assertEquals(1, codePoints.size());
     assertEquals('\u20AC', (int)codePoints.get(0));
   }
+
+  @Test
+  public void testDecoderSurrogateSplitAcrossOverflow() throws Exception {
+    final List<String> chunks = new ArrayList<String>();
+    BinaryDecoder decoder = new BinaryDecoder(2, Charset.forName("UTF-16BE"), new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        chunks.add(Helper.fromCodePoints(event));
+      }
+    });
+    decoder.write(new byte[]{0, 65, (byte) 0xD8, 0x00, (byte) 0xDE, (byte) 0xB7});
+    assertEquals(Arrays.asList("A", new StringBuilder().appendCodePoint(66231).toString()), chunks);
+  }
+
+  @Test
+  public void testUtf8DecoderSplitSequences() throws Exception {
+    String s = new StringBuilder("a\u00E9\u20AC").appendCodePoint(66231).append("z").toString();
+    byte[] bytes = s.getBytes(UTF8);
+    for (int size = 1;size <= bytes.length;size++) {
+      final StringBuilder sb = new StringBuilder();
+      BinaryDecoder decoder = new BinaryDecoder(2, UTF8, new CodePointConsumer() {
+        @Override
+        public void accept(int[] codePoints, int offset, int length) {
+          sb.append(new String(codePoints, offset, length));
+        }
+      });
+      for (int i = 0;i < bytes.length;i += size) {
+        decoder.write(bytes, i, Math.min(size, bytes.length - i));
+      }
+      assertEquals(s, sb.toString());
+    }
+  }
+
+  @Test
+  public void testUtf8DecoderRandom() throws Exception {
+    Random random = new Random(0);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0;i < 10000;i++) {
+      int cp;
+      switch (random.nextInt(4)) {
+        case 0:
+          cp = random.nextInt(0x80);
+          break;
+        case 1:
+          cp = 0x80 + random.nextInt(0x800 - 0x80);
+          break;
+        case 2:
+          cp = 0x800 + random.nextInt(0xD800 - 0x800);
+          break;
+        default:
+          cp = 0x10000 + random.nextInt(0x110000 - 0x10000);
+          break;
+      }
+      expected.appendCodePoint(cp);
+    }
+    byte[] bytes = expected.toString().getBytes(UTF8);
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(512, UTF8, new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        sb.append(new String(codePoints, offset, length));
+      }
+    });
+    int pos = 0;
+    while (pos < bytes.length) {
+      int len = Math.min(bytes.length - pos, 1 + random.nextInt(100));
+      decoder.write(bytes, pos, len);
+      pos += len;
+    }
+    assertEquals(expected.toString(), sb.toString());
+  }
+
+  @Test
+  public void testUtf8DecoderMalformed() throws Exception {
+    assertMalformed("\uFFFDa", 0x80, 'a'); // Unexpected continuation byte
+    assertMalformed("\uFFFDa", 0xE2, 0x82, 'a'); // Truncated sequence
+    assertMalformed("\uFFFD", 0xC0, 0x80); // Overlong encoding
+    assertMalformed("\uFFFD", 0xED, 0xA0, 0x80); // Surrogate
+    assertMalformed("\uFFFDa", 0xFF, 'a'); // Invalid lead byte
+  }
+
+  private void assertMalformed(String expected, int... bytes) {
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(UTF8, new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        sb.append(new String(codePoints, offset, length));
+      }
+    });
+    byte[] data = new byte[bytes.length];
+    for (int i = 0;i < bytes.length;i++) {
+      data[i] = (byte) bytes[i];
+    }
+    decoder.write(data);
+    assertEquals(expected, sb.toString());
+  }
+
+  @Test
+  public void testSetCharsetFlushesPendingInput() throws Exception {
+    Charset utf16 = Charset.forName("UTF-16BE");
+    assertSetCharset("\uFFFDa", UTF8, utf16, new byte[]{(byte) 0xE2, (byte) 0x82}, new byte[]{0, 'a'}); // Truncated sequence
+    assertSetCharset("\uFFFDa", utf16, UTF8, new byte[]{0}, new byte[]{'a'}); // Truncated char
+    assertSetCharset("\uFFFDa", utf16, UTF8, new byte[]{(byte) 0xD8, 0x3D}, new byte[]{'a'}); // High surrogate
+    assertSetCharset("\u20AC\u00E9", UTF8, Charset.forName("ISO-8859-1"), new byte[]{(byte) 0xE2, (byte) 0x82, (byte) 0xAC}, new byte[]{(byte) 0xE9});
+  }
+
+  private void assertSetCharset(String expected, Charset from, Charset to, byte[] before, byte[] after) {
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(from, new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        sb.append(new String(codePoints, offset, length));
+      }
+    });
+    decoder.write(before);
+    decoder.setCharset(to);
+    decoder.write(after);
+    assertEquals(expected, sb.toString());
+  }
+
+  @Test
+  public void testDecoderReusesCodePointArray() throws Exception {
+    final List<int[]> arrays = new ArrayList<int[]>();
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(4, UTF8, new CodePointConsumer() {
+      @Override
+      public void accept(int[] codePoints, int offset, int length) {
+        arrays.add(codePoints);
+        sb.append(new String(codePoints, offset, length));
+      }
+    });
+    decoder.write(new byte[]{'a', 'b', 'c', 'd', 'e', 'f'});
+    decoder.write(new byte[]{(byte) 0xE2, (byte) 0x82});
+    decoder.write(new byte[]{(byte) 0xAC, 'g'});
+    assertEquals("abcdef\u20ACg", sb.toString());
+    assertEquals(3, arrays.size());
+    for (int[] array : arrays) {
+      assertSame(arrays.get(0), array);
+    }
+  }
+
+  @Test
+  public void testEncodeIntoArray() throws Exception {
+    String s = new StringBuilder("a\u00E9\u20AC").appendCodePoint(66231).toString();
+    int[] codePoints = Helper.toCodePoints("_" + s + "_");
+    BinaryEncoder encoder = new BinaryEncoder(UTF8, null);
+    byte[] expected = s.getBytes(UTF8);
+    assertEquals(expected.length, BinaryEncoder.utf8Length(codePoints, 1, codePoints.length - 2));
+    byte[] dst = new byte[expected.length + 2];
+    assertEquals(expected.length, encoder.encode(codePoints, 1, codePoints.length - 2, dst, 2));
+    assertEquals(Arrays.toString(expected), Arrays.toString(Arrays.copyOfRange(dst, 2, dst.length)));
+    try {
+      encoder.encode(codePoints, 1, codePoints.length - 2, dst, 3);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  @Test
+  public void testEncodeIntoByteBuf() throws Exception {
+    String s = new StringBuilder("a\u00E9\u20AC").appendCodePoint(66231).toString();
+    int[] codePoints = Helper.toCodePoints(s);
+    for (Charset charset : Arrays.asList(UTF8, Charset.forName("UTF-16BE"))) {
+      BinaryEncoder encoder = new BinaryEncoder(charset, null);
+      for (ByteBuf buf : Arrays.asList(Unpooled.buffer(1), Unpooled.directBuffer(1))) {
+        buf.writeBytes("_".getBytes(charset));
+        encoder.encode(codePoints, 0, codePoints.length, buf);
+        assertEquals("_" + s, buf.toString(charset));
+        buf.release();
+      }
+    }
+  }
+
+  @Test
+  public void testEncoderByteBufMode() throws Exception {
+    final List<ByteBuf> bufs = new ArrayList<ByteBuf>();
+    BinaryEncoder encoder = new BinaryEncoder(UTF8, new Supplier<ByteBufAllocator>() {
+      @Override
+      public ByteBufAllocator get() {
+        return UnpooledByteBufAllocator.DEFAULT;
+      }
+    }, new Consumer<ByteBuf>() {
+      @Override
+      public void accept(ByteBuf buf) {
+        bufs.add(buf);
+      }
+    });
+    encoder.accept(new int[0]);
+    assertEquals(0, bufs.size());
+    encoder.accept(Helper.toCodePoints("h\u00E9llo"));
+    assertEquals(1, bufs.size());
+    assertEquals("h\u00E9llo", bufs.get(0).toString(UTF8));
+    assertEquals(1, bufs.get(0).refCnt());
+    bufs.get(0).release();
+  }
+
+  @Test
+  public void testEncodeReplacement() throws Exception {
+    int[] codePoints = {'a', 0xD800, '\u20AC', 'b'};
+    assertEquals(Arrays.toString(new String(codePoints, 0, 4).getBytes(UTF8)),
+        Arrays.toString(new BinaryEncoder(UTF8, null).encode(codePoints, 0, 4)));
+    assertEquals("a??b", new String(new BinaryEncoder(Charset.forName("ISO-8859-1"), null).encode(codePoints, 0, 4), "ISO-8859-1"));
+  }
 }
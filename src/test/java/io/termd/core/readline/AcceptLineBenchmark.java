@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
+import io.termd.core.tty.TtyConnection;
+import io.termd.core.tty.TtyConnectionSupport;
+import io.termd.core.tty.TtyEvent;
+import io.termd.core.util.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lines accepted by concurrent sessions, each benchmark thread is a session reading a line and
+ * accepting it. The sessions either have their own history or share a single history.
+ *
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main AcceptLineBenchmark}, the {@code shared=false}
+ * and {@code shared=true} scores show the history contention when the machine has at least as many cores as
+ * the benchmark threads.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class AcceptLineBenchmark {
+
+  private static final int[] LINE = {'l', 's', ' ', '-', 'l', '\r'};
+
+  @State(Scope.Benchmark)
+  public static class SharedHistory {
+    final History history = new InMemoryHistory();
+  }
+
+  @Param({"false", "true"})
+  public boolean shared;
+
+  private Readline readline;
+  private Consumer<int[]> stdin;
+  private final Consumer<int[]> stdout = new Consumer<int[]>() {
+    @Override
+    public void accept(int[] codePoints) {
+    }
+  };
+  private final Consumer<String> requestHandler = new Consumer<String>() {
+    @Override
+    public void accept(String line) {
+    }
+  };
+
+  @Setup
+  public void setup(SharedHistory sharedHistory) {
+    readline = new Readline(InputrcParser.create());
+    if (shared) {
+      readline.setHistory(sharedHistory.history);
+    }
+  }
+
+  @Benchmark
+  public void acceptLine() {
+    readline.readline(conn, "% ", requestHandler);
+    stdin.accept(LINE);
+  }
+
+  private final TtyConnection conn = new TtyConnectionSupport() {
+
+    @Override
+    public Charset inputCharset() {
+      return Charset.forName("UTF-8");
+    }
+
+    @Override
+    public Charset outputCharset() {
+      return Charset.forName("UTF-8");
+    }
+
+    @Override
+    public long lastAccessedTime() {
+      return 0;
+    }
+
+    @Override
+    public String terminalType() {
+      return "xterm";
+    }
+
+    @Override
+    public Vector size() {
+      return new Vector(80, 24);
+    }
+
+    @Override
+    public Consumer<String> getTerminalTypeHandler() {
+      return null;
+    }
+
+    @Override
+    public void setTerminalTypeHandler(Consumer<String> handler) {
+    }
+
+    @Override
+    public Consumer<Vector> getSizeHandler() {
+      return null;
+    }
+
+    @Override
+    public void setSizeHandler(Consumer<Vector> handler) {
+    }
+
+    @Override
+    public BiConsumer<TtyEvent, Integer> getEventHandler() {
+      return null;
+    }
+
+    @Override
+    public void setEventHandler(BiConsumer<TtyEvent, Integer> handler) {
+    }
+
+    @Override
+    public Consumer<int[]> getStdinHandler() {
+      return stdin;
+    }
+
+    @Override
+    public void setStdinHandler(Consumer<int[]> handler) {
+      stdin = handler;
+    }
+
+    @Override
+    public Consumer<int[]> stdoutHandler() {
+      return stdout;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      task.run();
+    }
+
+    @Override
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setCloseHandler(Consumer<Void> closeHandler) {
+    }
+
+    @Override
+    public Consumer<Void> getCloseHandler() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+    }
+  };
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.TestBase;
+import io.termd.core.function.Consumer;
+import io.termd.core.util.Helper;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class CompletionCacheTest extends TestBase {
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private Consumer<Completion> completer(final String... catalog) {
+    return new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        calls.incrementAndGet();
+        int[] prefix = completion.prefix();
+        String word = Helper.fromCodePoints(prefix).substring(prefix.length - completion.wordLength());
+        for (String candidate : catalog) {
+          if (candidate.startsWith(word)) {
+            completion.addCandidate(Helper.toCodePoints(candidate));
+          }
+        }
+        completion.endCandidates();
+      }
+    };
+  }
+
+  @Test
+  public void testNarrowing() {
+    TestTerm term = new TestTerm(this);
+    CompletionCache cache = new CompletionCache(completer("foo", "fob", "bar"));
+    term.readlineComplete(cache);
+    term.read('f', 'o', '\t');
+    assertEquals(1, calls.get());
+    term.assertScreen("% fo", "foo fob ", "% fo");
+    term.read('o', '\t');
+    assertEquals(1, calls.get());
+    term.assertScreen("% fo", "foo fob ", "% foo ");
+    assertEquals(2, cache.size());
+    // Another word is not narrowed
+    term.read('f', '\t');
+    assertEquals(2, calls.get());
+    term.assertScreen("% fo", "foo fob ", "% foo fo");
+  }
+
+  @Test
+  public void testCommandContext() {
+    // Files for ls and directories for cd
+    final Consumer<Completion> files = completer("foo", "fob");
+    final Consumer<Completion> dirs = completer("folder");
+    CompletionCache cache = new CompletionCache(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        if (Helper.fromCodePoints(completion.line()).startsWith("cd ")) {
+          dirs.accept(completion);
+        } else {
+          files.accept(completion);
+        }
+      }
+    });
+    TestTerm ls = new TestTerm(this);
+    ls.readlineComplete(cache);
+    ls.read('l', 's', ' ', 'f', 'o', '\t');
+    assertEquals(1, calls.get());
+    ls.assertScreen("% ls fo", "foo fob ", "% ls fo");
+    TestTerm cd = new TestTerm(this);
+    cd.readlineComplete(cache);
+    cd.read('c', 'd', ' ', 'f', 'o', '\t');
+    assertEquals(2, calls.get());
+    cd.assertScreen("% cd folder ");
+    // The same command narrows its own candidates
+    ls.read('b', '\t');
+    assertEquals(2, calls.get());
+    ls.assertScreen("% ls fo", "foo fob ", "% ls fob ");
+  }
+
+  @Test
+  public void testInvalidate() {
+    TestTerm term = new TestTerm(this);
+    CompletionCache cache = new CompletionCache(completer("foo", "fob"));
+    term.readlineComplete(cache);
+    term.read('f', '\t');
+    assertEquals(1, calls.get());
+    assertEquals(1, cache.size());
+    cache.invalidate();
+    assertEquals(0, cache.size());
+    term.read('o', '\t');
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testMaxEntries() {
+    TestTerm term = new TestTerm(this);
+    CompletionCache cache = new CompletionCache(completer("abc", "abd"), 2, 10);
+    term.readlineComplete(cache);
+    term.read('a', '\t', ' ', 'b', '\t', ' ', 'c', '\t');
+    assertEquals(3, calls.get());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testMaxCandidates() {
+    TestTerm term = new TestTerm(this);
+    CompletionCache cache = new CompletionCache(completer("abc", "abd", "abe"), 16, 2);
+    term.readlineComplete(cache);
+    term.read('a', '\t');
+    assertEquals(1, calls.get());
+    assertEquals(0, cache.size());
+  }
+}
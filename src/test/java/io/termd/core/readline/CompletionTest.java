@@ -25,6 +25,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -383,6 +384,152 @@ public class CompletionTest extends TestBase {
     assertEquals("a\"\nbd\"c", line.get());
   }
 
+  @Test
+  public void testStreamSingleCandidate() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        assertTrue(completion.addCandidate(Helper.toCodePoints("foobar")));
+        completion.endCandidates();
+      }
+    });
+    term.read('f', 'o', 'o', '\t');
+    term.assertScreen("% foobar ");
+    term.assertAt(0, 9);
+    term.read('\r');
+    assertEquals("foobar ", line.get());
+  }
+
+  @Test
+  public void testStreamCommonPrefix() {
+    TestTerm term = new TestTerm(this);
+    final AtomicReference<Completion> completion = new AtomicReference<Completion>();
+    term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion c) {
+        completion.set(c);
+      }
+    });
+    term.read('f', '\t');
+    completion.get().addCandidate(Helper.toCodePoints("foobar"));
+    assertEquals("foobar", Helper.fromCodePoints(completion.get().getCommonPrefix()));
+    completion.get().addCandidate(Helper.toCodePoints("foobaz"));
+    assertEquals("fooba", Helper.fromCodePoints(completion.get().getCommonPrefix()));
+    completion.get().addCandidate(Helper.toCodePoints("fox"));
+    assertEquals("fo", Helper.fromCodePoints(completion.get().getCommonPrefix()));
+    completion.get().endCandidates();
+    term.assertScreen("% fo");
+    term.assertAt(0, 4);
+    assertFalse(completion.get().addCandidate(Helper.toCodePoints("fo")));
+  }
+
+  @Test
+  public void testStreamDisplayLimit() {
+    TestTerm term = streamCandidates(3, 5);
+    term.read('f', 'o', 'o', '\t');
+    term.assertScreen("% foo", "Display all 5 possibilities? (y or n)");
+    term.read('x');
+    assertEquals(1, term.getBellCount());
+    term.read('y');
+    term.assertScreen("% foo", "Display all 5 possibilities? (y or n)", "foo0 foo1 foo2 foo3 foo4 ", "% foo");
+    term.assertAt(3, 5);
+  }
+
+  @Test
+  public void testStreamDisplayLimitDeclined() {
+    TestTerm term = streamCandidates(3, 5);
+    term.read('f', 'o', 'o', '\t');
+    term.read('n', 'b');
+    term.assertScreen("% foo", "Display all 5 possibilities? (y or n)", "% foob");
+    term.assertAt(2, 6);
+  }
+
+  private TestTerm streamCandidates(final int limit, final int count) {
+    TestTerm term = new TestTerm(this);
+    term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        completion.setDisplayLimit(limit);
+        for (int i = 0;i < count;i++) {
+          completion.addCandidate(Helper.toCodePoints("foo" + i));
+        }
+        assertEquals(count, completion.getCandidateCount());
+        completion.endCandidates();
+      }
+    });
+    return term;
+  }
+
+  @Test
+  public void testStreamCancel() {
+    TestTerm term = new TestTerm(this);
+    final AtomicReference<Completion> completion = new AtomicReference<Completion>();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    Supplier<String> line = term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion c) {
+        completion.set(c);
+        c.setCancelHandler(new Consumer<Void>() {
+          @Override
+          public void accept(Void v) {
+            cancelled.set(true);
+          }
+        });
+      }
+    });
+    term.read('f', '\t');
+    assertTrue(completion.get().addCandidate(Helper.toCodePoints("foo")));
+    term.read('x');
+    assertTrue(cancelled.get());
+    assertTrue(completion.get().isCancelled());
+    term.assertScreen("% fx");
+    assertFalse(completion.get().addCandidate(Helper.toCodePoints("fox")));
+    completion.get().endCandidates();
+    term.assertScreen("% fx");
+    term.read('\r');
+    assertEquals("fx", line.get());
+  }
+
+  @Test
+  public void testCancelRacingComplete() throws Exception {
+    for (int i = 0;i < 200;i++) {
+      TestTerm term = new TestTerm(this);
+      final AtomicReference<Completion> completion = new AtomicReference<Completion>();
+      term.readlineComplete(new Consumer<Completion>() {
+        @Override
+        public void accept(Completion c) {
+          completion.set(c);
+          c.setCancelHandler(new Consumer<Void>() {
+            @Override
+            public void accept(Void v) {
+            }
+          });
+        }
+      });
+      term.read('f', '\t');
+      final CountDownLatch latch = new CountDownLatch(1);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      Thread completer = new Thread() {
+        @Override
+        public void run() {
+          try {
+            latch.await();
+            completion.get().end();
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      };
+      completer.start();
+      latch.countDown();
+      boolean cancelled = completion.get().cancel();
+      completer.join();
+      assertNull(failure.get());
+      assertEquals(cancelled, completion.get().isCancelled());
+    }
+  }
+
   @Test
   public void testEscape() throws Exception {
     assertPrefix("\\", "\\");
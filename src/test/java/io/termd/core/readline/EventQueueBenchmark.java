@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+
+/**
+ * Measures an {@link EventQueue} receiving a paste in chunks of 512 code points like the binary decoder
+ * produces and then draining it, the time per operation should grow linearly with the size.
+ *
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main EventQueueBenchmark}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class EventQueueBenchmark {
+
+  @Param({"1048576", "4194304"})
+  public int size;
+
+  private int[] chunk;
+  private EventQueue queue;
+
+  @Setup
+  public void setup() {
+    chunk = new int[512];
+    Arrays.fill(chunk, 'a');
+    queue = new EventQueue(Keymap.getDefault());
+  }
+
+  @Benchmark
+  public void paste(Blackhole blackhole) {
+    for (int i = 0;i < size;i += chunk.length) {
+      queue.append(chunk);
+    }
+    while (queue.hasNext()) {
+      blackhole.consume(queue.next());
+    }
+  }
+}
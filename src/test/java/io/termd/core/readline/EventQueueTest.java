@@ -21,6 +21,7 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.nio.IntBuffer;
 import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -95,6 +96,107 @@ public class EventQueueTest {
     assertEquals('a', key.getCodePointAt(0));
   }
 
+  @Test
+  public void testLongestMatch() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"a\":foo\n\"abc\":bar".getBytes())));
+    queue.append('a', 'b', 'c');
+    assertEquals("bar", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+    queue.append('a', 'b', 'd');
+    assertEquals("foo", ((FunctionEvent) queue.next()).name());
+    assertEquals('b', ((KeyEvent) queue.next()).getCodePointAt(0));
+    assertEquals('d', ((KeyEvent) queue.next()).getCodePointAt(0));
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testLastBindingWins() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo\n\"ab\":bar".getBytes())));
+    queue.append('a', 'b');
+    assertEquals("bar", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testWrapAround() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes())));
+    int expected = 0;
+    for (int i = 0;i < 100;i++) {
+      queue.append('x', 'y', 'z');
+      if (i % 3 == 0) {
+        queue.append('a', 'b');
+      }
+      while (queue.hasNext()) {
+        KeyEvent event = queue.next();
+        if (event instanceof FunctionEvent) {
+          assertEquals("foo", ((FunctionEvent) event).name());
+        } else {
+          assertEquals("xyz".charAt(expected++ % 3), event.getCodePointAt(0));
+        }
+      }
+    }
+    assertEquals(300, expected);
+    assertEquals(0, queue.getBuffer().capacity());
+    queue.append('a');
+    queue.append(new int[100]);
+    int[] pending = queue.clear();
+    assertEquals(101, pending.length);
+    assertEquals('a', pending[0]);
+    assertEquals(0, queue.getBuffer().capacity());
+  }
+
+  @Test
+  public void testPaste() {
+    EventQueue queue = new EventQueue(new Keymap());
+    queue.append(EventQueue.PASTE_BEGIN);
+    queue.append('a', '\r', 'b', 27, '[', '2');
+    assertFalse(queue.hasNext());
+    queue.append('0', '1');
+    assertFalse(queue.hasNext());
+    queue.append('~', 'c');
+    KeyEvent event = queue.next();
+    assertTrue(event instanceof PasteEvent);
+    assertEquals(3, event.length());
+    assertEquals('a', event.getCodePointAt(0));
+    assertEquals('\r', event.getCodePointAt(1));
+    assertEquals('b', event.getCodePointAt(2));
+    assertEquals('c', queue.next().getCodePointAt(0));
+    assertFalse(queue.hasNext());
+    queue.append(EventQueue.PASTE_BEGIN);
+    queue.append(EventQueue.PASTE_END);
+    event = queue.next();
+    assertTrue(event instanceof PasteEvent);
+    assertEquals(0, event.length());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testPasteWithoutEnd() {
+    EventQueue queue = new EventQueue(new Keymap());
+    queue.append(EventQueue.PASTE_BEGIN);
+    int[] text = new int[EventQueue.MAX_PASTE_LENGTH];
+    Arrays.fill(text, 'a');
+    queue.append(text);
+    assertFalse(queue.hasNext());
+    // The buffered paste exceeds the max length, it is delivered without the code points that can start the end
+    queue.append('b', 27);
+    KeyEvent event = queue.next();
+    assertTrue(event instanceof PasteEvent);
+    assertEquals(EventQueue.MAX_PASTE_LENGTH + 2 - (EventQueue.PASTE_END.length - 1), event.length());
+    assertFalse(queue.hasNext());
+    // The following code points continue the paste until its end marker
+    queue.append('[', '2', '0', '1', '~', 'c');
+    event = queue.next();
+    assertTrue(event instanceof PasteEvent);
+    assertEquals(4, event.length());
+    assertEquals('a', event.getCodePointAt(0));
+    assertEquals('b', event.getCodePointAt(3));
+    event = queue.next();
+    assertFalse(event instanceof PasteEvent);
+    assertEquals('c', event.getCodePointAt(0));
+    assertFalse(queue.hasNext());
+  }
+
   @Test
   public void testBuffer() {
     EventQueue queue = new EventQueue(new Keymap());
@@ -17,9 +17,19 @@
 package io.termd.core.readline;
 
 import io.termd.core.TestBase;
+import io.termd.core.function.Supplier;
+import io.termd.core.readline.functions.ForwardSearchHistory;
+import io.termd.core.readline.functions.ReverseSearchHistory;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
@@ -28,8 +38,8 @@ public class HistoryTest extends TestBase {
   @Test
   public void testHistory() {
     TestTerm term = new TestTerm(this);
-    term.readline.getHistory().add(Helper.toCodePoints("abc"));
-    term.readline.getHistory().add(Helper.toCodePoints("def"));
+    term.readline.getHistoryStore().add(Helper.toCodePoints("abc"));
+    term.readline.getHistoryStore().add(Helper.toCodePoints("def"));
     term.readlineComplete();
     term.read(Keys.UP.sequence);
     term.assertScreen("% abc");
@@ -54,7 +64,7 @@ public class HistoryTest extends TestBase {
   @Test
   public void testMultiline() {
     TestTerm term = new TestTerm(this);
-    term.readline.getHistory().add(Helper.toCodePoints("abc\ndef\nghi"));
+    term.readline.getHistoryStore().add(Helper.toCodePoints("abc\ndef\nghi"));
     term.readlineComplete();
     term.read(Keys.UP.sequence);
     term.assertScreen("% abc", "def", "ghi");
@@ -62,6 +72,129 @@ public class HistoryTest extends TestBase {
     term.assertScreen("% ", "", "");
   }
 
+  @Test
+  public void testReverseSearch() {
+    TestTerm term = new TestTerm(this);
+    term.readline.addFunction(new ReverseSearchHistory());
+    term.readline.addFunction(new ForwardSearchHistory());
+    term.readline.getHistoryStore().add(Helper.toCodePoints("git push"));
+    term.readline.getHistoryStore().add(Helper.toCodePoints("ls"));
+    term.readline.getHistoryStore().add(Helper.toCodePoints("git pull"));
+    Supplier<String> line = term.readlineComplete();
+    term.read(18);
+    term.assertScreen("(reverse-i-search)`': ");
+    term.read('p', 'u');
+    term.assertScreen("(reverse-i-search)`pu': git push");
+    term.assertAt(0, 28);
+    term.read('l');
+    term.assertScreen("(reverse-i-search)`pul': git pull");
+    term.read('x');
+    term.assertScreen("(failed reverse-i-search)`pulx': git pul", "l");
+    term.read(8);
+    term.assertScreen("(reverse-i-search)`pul': git pull", "");
+    term.read(8);
+    term.assertScreen("(reverse-i-search)`pu': git push", "");
+    term.read(18);
+    term.assertScreen("(reverse-i-search)`pu': git pull", "");
+    term.read(19);
+    term.assertScreen("(i-search)`pu': git push", "");
+    term.read('\r');
+    assertEquals("git push", line.get());
+  }
+
+  @Test
+  public void testReverseSearchAbort() {
+    TestTerm term = new TestTerm(this);
+    term.readline.addFunction(new ReverseSearchHistory());
+    term.readline.getHistoryStore().add(Helper.toCodePoints("abc"));
+    term.readlineComplete();
+    term.read('d');
+    term.read(18, 'b');
+    term.assertScreen("(reverse-i-search)`b': abc");
+    term.read(7);
+    term.assertScreen("% d");
+    term.assertAt(0, 3);
+    term.read(18, 'b', 5);
+    term.assertScreen("% abc");
+    term.assertAt(0, 5);
+  }
+
+  @Test
+  public void testConcurrentAcceptLine() throws Exception {
+    final int sessions = 16;
+    final int lines = 100;
+    final History history = new InMemoryHistory(sessions * lines);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[sessions];
+    for (int i = 0;i < sessions;i++) {
+      final int session = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int j = 0;j < lines;j++) {
+              // A new term for each line as the screen of a term has a few rows only
+              TestTerm term = new TestTerm(HistoryTest.this);
+              term.readline.setHistory(history);
+              term.readlineComplete();
+              term.read(Helper.toCodePoints(session + "-" + j + "\r"));
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(sessions * lines, history.size());
+    Set<String> entries = new HashSet<String>();
+    for (int[] entry : history) {
+      entries.add(Helper.fromCodePoints(entry));
+    }
+    for (int i = 0;i < sessions;i++) {
+      for (int j = 0;j < lines;j++) {
+        assertTrue(entries.contains(i + "-" + j));
+      }
+    }
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testSetHistoryList() {
+    TestTerm term = new TestTerm(this);
+    List<int[]> lines = new ArrayList<int[]>();
+    lines.add(Helper.toCodePoints("abc"));
+    term.readline.setHistory(lines);
+    term.readlineComplete();
+    term.read('d', 'e', 'f', '\r');
+    // The list is copied
+    assertEquals(1, lines.size());
+    List<int[]> history = term.readline.getHistory();
+    assertEquals(2, history.size());
+    assertEquals("def", Helper.fromCodePoints(history.get(0)));
+    assertEquals("abc", Helper.fromCodePoints(history.get(1)));
+  }
+
+  @Test
+  public void testGetHistorySnapshot() {
+    TestTerm term = new TestTerm(this);
+    term.readline.getHistoryStore().add(Helper.toCodePoints("abc"));
+    List<int[]> snapshot = term.readline.getHistory();
+    term.readlineComplete();
+    term.read('d', 'e', 'f', '\r');
+    assertEquals(1, snapshot.size());
+    assertEquals("abc", Helper.fromCodePoints(snapshot.get(0)));
+    snapshot.remove(0);
+    assertEquals(2, term.readline.getHistory().size());
+  }
+
   @Test
   public void testEmptyLineMustNotBeAddedToHistory() {
     TestTerm term = new TestTerm(this);
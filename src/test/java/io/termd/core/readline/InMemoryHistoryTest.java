@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class InMemoryHistoryTest {
+
+  @Test
+  public void testAddFirst() {
+    InMemoryHistory history = new InMemoryHistory(3);
+    history.addFirst(Helper.toCodePoints("a"));
+    history.addFirst(Helper.toCodePoints("b"));
+    history.addFirst(Helper.toCodePoints("c"));
+    history.addFirst(Helper.toCodePoints("d"));
+    assertEquals(3, history.size());
+    assertEquals("d", Helper.fromCodePoints(history.get(0)));
+    assertEquals("c", Helper.fromCodePoints(history.get(1)));
+    assertEquals("b", Helper.fromCodePoints(history.get(2)));
+    assertEquals(-1, history.indexOfPrefix(Helper.toCodePoints("a"), 1, 0));
+  }
+
+  @Test
+  public void testAdd() {
+    InMemoryHistory history = new InMemoryHistory(2);
+    assertTrue(history.add(Helper.toCodePoints("b")));
+    history.addFirst(Helper.toCodePoints("c"));
+    assertFalse(history.add(Helper.toCodePoints("a")));
+    assertEquals(2, history.size());
+    assertEquals("c", Helper.fromCodePoints(history.get(0)));
+    assertEquals("b", Helper.fromCodePoints(history.get(1)));
+    assertEquals(1, history.indexOfPrefix(Helper.toCodePoints("b"), 1, 0));
+    history.clear();
+    assertEquals(0, history.size());
+    assertEquals(-1, history.indexOfPrefix(Helper.toCodePoints("b"), 1, 0));
+  }
+
+  @Test
+  public void testIgnoreDuplicates() {
+    InMemoryHistory history = new InMemoryHistory().setIgnoreDuplicates(true);
+    assertTrue(history.addFirst(Helper.toCodePoints("a")));
+    assertFalse(history.addFirst(Helper.toCodePoints("a")));
+    assertTrue(history.addFirst(Helper.toCodePoints("b")));
+    assertTrue(history.addFirst(Helper.toCodePoints("a")));
+    assertEquals(3, history.size());
+  }
+
+  @Test
+  public void testPrefixSearch() {
+    Random random = new Random(0);
+    InMemoryHistory history = new InMemoryHistory(200);
+    final List<int[]> expected = new ArrayList<int[]>();
+    History reference = new History() {
+      @Override
+      public boolean addFirst(int[] line) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      public int[] get(int index) {
+        return expected.get(index);
+      }
+      @Override
+      public int size() {
+        return expected.size();
+      }
+    };
+    for (int i = 0;i < 1000;i++) {
+      int[] line = new int[random.nextInt(5)];
+      for (int j = 0;j < line.length;j++) {
+        line[j] = 'a' + random.nextInt(3);
+      }
+      if (random.nextInt(10) == 0) {
+        if (history.add(line)) {
+          expected.add(line);
+        }
+      } else {
+        history.addFirst(line);
+        expected.add(0, line);
+        if (expected.size() > 200) {
+          expected.remove(200);
+        }
+      }
+      assertEquals(expected.size(), history.size());
+      int[] prefix = new int[random.nextInt(4)];
+      for (int j = 0;j < prefix.length;j++) {
+        prefix[j] = 'a' + random.nextInt(3);
+      }
+      int from = random.nextInt(expected.size() + 2) - 1;
+      assertEquals(reference.indexOfPrefix(prefix, prefix.length, from), history.indexOfPrefix(prefix, prefix.length, from));
+      assertEquals(reference.lastIndexOfPrefix(prefix, prefix.length, from), history.lastIndexOfPrefix(prefix, prefix.length, from));
+    }
+    for (int i = 0;i < expected.size();i++) {
+      assertTrue(Arrays.equals(expected.get(i), history.get(i)));
+    }
+  }
+
+  @Test
+  public void testSubstringSearch() {
+    Random random = new Random(0);
+    InMemoryHistory history = new InMemoryHistory(100);
+    final List<int[]> expected = new ArrayList<int[]>();
+    History reference = new History() {
+      @Override
+      public boolean addFirst(int[] line) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      public int[] get(int index) {
+        return expected.get(index);
+      }
+      @Override
+      public int size() {
+        return expected.size();
+      }
+    };
+    for (int i = 0;i < 1000;i++) {
+      int[] line = new int[random.nextInt(10)];
+      for (int j = 0;j < line.length;j++) {
+        line[j] = 'a' + random.nextInt(4);
+      }
+      history.addFirst(line);
+      expected.add(0, line);
+      if (expected.size() > 100) {
+        expected.remove(100);
+      }
+      int[] text = new int[random.nextInt(5)];
+      for (int j = 0;j < text.length;j++) {
+        text[j] = 'a' + random.nextInt(4);
+      }
+      int from = random.nextInt(expected.size() + 2) - 1;
+      assertEquals(reference.indexOfSubstring(text, text.length, from), history.indexOfSubstring(text, text.length, from));
+      assertEquals(reference.lastIndexOfSubstring(text, text.length, from), history.lastIndexOfSubstring(text, text.length, from));
+    }
+    history.clear();
+    assertEquals(-1, history.indexOfSubstring(Helper.toCodePoints("a"), 1, 0));
+  }
+
+  @Test
+  public void testFileHistory() throws Exception {
+    File file = File.createTempFile("history", ".txt");
+    file.deleteOnExit();
+    FileHistory history = new FileHistory(file, 3);
+    assertEquals(0, history.size());
+    history.addFirst(Helper.toCodePoints("a\\b"));
+    history.addFirst(Helper.toCodePoints("c\nd"));
+    history.addFirst(Helper.toCodePoints("\uD83D\uDE00"));
+    history.close();
+    history = new FileHistory(file, 3);
+    assertEquals(3, history.size());
+    assertEquals("\uD83D\uDE00", Helper.fromCodePoints(history.get(0)));
+    assertEquals("c\nd", Helper.fromCodePoints(history.get(1)));
+    assertEquals("a\\b", Helper.fromCodePoints(history.get(2)));
+    for (int i = 0;i < 10;i++) {
+      history.addFirst(Helper.toCodePoints("e" + i));
+    }
+    history.close();
+    // The file is rewritten when an added line makes it exceed twice the max size
+    assertEquals("e9\n".length() * 5, file.length());
+    history = new FileHistory(file, 3);
+    history.close();
+    assertEquals(3, history.size());
+    assertEquals("e9", Helper.fromCodePoints(history.get(0)));
+    assertEquals("e9\n".length() * 5, file.length());
+    // A file with more than twice the max size is rewritten when it is loaded
+    FileOutputStream lines = new FileOutputStream(file, true);
+    for (int i = 0;i < 10;i++) {
+      lines.write(("h" + i + "\n").getBytes("UTF-8"));
+    }
+    lines.close();
+    history = new FileHistory(file, 3);
+    history.close();
+    assertEquals("h9", Helper.fromCodePoints(history.get(0)));
+    assertEquals("h9\n".length() * 3, file.length());
+    // An incomplete last line is kept
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write("f".getBytes("UTF-8"));
+    out.close();
+    history = new FileHistory(file, 3);
+    history.addFirst(Helper.toCodePoints("g"));
+    history.close();
+    history = new FileHistory(file, 3);
+    history.close();
+    assertEquals("g", Helper.fromCodePoints(history.get(0)));
+    assertEquals("f", Helper.fromCodePoints(history.get(1)));
+  }
+}
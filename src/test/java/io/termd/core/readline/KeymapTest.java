@@ -28,4 +28,28 @@ public class KeymapTest {
     assertEquals("my-func", ((FunctionEvent) eq.next()).name());
     assertFalse(eq.hasNext());
   }
+
+  @Test
+  public void testDefault() {
+    Keymap keymap = Keymap.getDefault();
+    assertSame(Keymap.getDefault().root(), keymap.root());
+    EventQueue eq = new EventQueue(keymap);
+    eq.append('A' - 64);
+    assertEquals("beginning-of-line", ((FunctionEvent) eq.next()).name());
+  }
+
+  @Test
+  public void testOverlay() {
+    Keymap keymap = Keymap.getDefault().bindFunction("\\C-a", "my-func");
+    EventQueue eq = new EventQueue(keymap);
+    eq.append('A' - 64);
+    assertEquals("my-func", ((FunctionEvent) eq.next()).name());
+    eq = new EventQueue(Keymap.getDefault());
+    eq.append('A' - 64);
+    assertEquals("beginning-of-line", ((FunctionEvent) eq.next()).name());
+    // A queue keeps the bindings of its keymap at creation
+    keymap.bindFunction("\\C-e", "other-func");
+    eq.append('E' - 64);
+    assertEquals("end-of-line", ((FunctionEvent) eq.next()).name());
+  }
 }
@@ -1,8 +1,11 @@
 package io.termd.core.readline;
 
+import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 /**
@@ -42,6 +45,124 @@ public class LineBufferTest {
     assertEquals(4, buffer.getSize());
   }
 
+  @Test
+  public void testInsertArrayGrow() {
+    LineBuffer buffer = new LineBuffer(4);
+    buffer.insert('a', 'b');
+    buffer.moveCursor(-1);
+    buffer.insert('c', 'd', 'e', 'f', 'g');
+    assertEquals("acdefgb", buffer.toString());
+    assertEquals(6, buffer.getCursor());
+    assertEquals(7, buffer.getSize());
+    try {
+      buffer.insert('h', '\t', 'i');
+      fail();
+    } catch (IllegalArgumentException ignore) {
+    }
+    assertEquals("acdefghb", buffer.toString());
+  }
+
+  @Test
+  public void testLazyCapacity() {
+    LineBuffer buffer = new LineBuffer();
+    assertEquals(0, buffer.getCapacity());
+    assertEquals(0, buffer.copy().getCapacity());
+    buffer.insert('a');
+    assertTrue(buffer.getCapacity() > 0);
+    assertTrue(buffer.getCapacity() < 1000);
+  }
+
+  @Test
+  public void testEditAtRandom() {
+    Random random = new Random(0);
+    LineBuffer buffer = new LineBuffer();
+    StringBuilder expected = new StringBuilder();
+    int cursor = 0;
+    for (int i = 0;i < 10000;i++) {
+      switch (random.nextInt(5)) {
+        case 0: {
+          int c = 'a' + random.nextInt(26);
+          buffer.insert(c);
+          expected.insert(cursor++, (char) c);
+          break;
+        }
+        case 1: {
+          int[] codePoints = new int[random.nextInt(40)];
+          for (int j = 0;j < codePoints.length;j++) {
+            codePoints[j] = 'A' + random.nextInt(26);
+          }
+          buffer.insert(codePoints);
+          expected.insert(cursor, new String(codePoints, 0, codePoints.length));
+          cursor += codePoints.length;
+          break;
+        }
+        case 2: {
+          int delta = random.nextInt(10) - 5;
+          int deleted = buffer.delete(delta);
+          if (delta > 0) {
+            expected.delete(cursor, cursor + deleted);
+          } else {
+            expected.delete(cursor - deleted, cursor);
+            cursor -= deleted;
+          }
+          break;
+        }
+        case 3:
+          cursor = random.nextInt(expected.length() + 1);
+          buffer.setCursor(cursor);
+          break;
+        case 4:
+          if (random.nextInt(20) == 0) {
+            int size = random.nextInt(expected.length() + 1);
+            buffer.setSize(size);
+            expected.setLength(size);
+            cursor = Math.min(cursor, size);
+          } else {
+            buffer = buffer.copy();
+          }
+          break;
+      }
+      assertEquals(expected.length(), buffer.getSize());
+      assertEquals(cursor, buffer.getCursor());
+    }
+    assertEquals(expected.toString(), buffer.toString());
+    assertEquals(expected.toString(), new String(buffer.toArray(), 0, buffer.getSize()));
+    for (int i = 0;i < expected.length();i++) {
+      assertEquals(expected.charAt(i), buffer.getAt(i));
+    }
+  }
+
+  @Test
+  public void testPositionIndex() {
+    Random random = new Random(0);
+    LineBuffer buffer = new LineBuffer();
+    for (int i = 0;i < 2000;i++) {
+      switch (random.nextInt(4)) {
+        case 0:
+          buffer.insert(random.nextInt(10) == 0 ? '\n' : 'a' + random.nextInt(26));
+          break;
+        case 1:
+          buffer.delete(random.nextInt(6) - 3);
+          break;
+        case 2:
+          buffer.setCursor(random.nextInt(buffer.getSize() + 1));
+          break;
+        case 3:
+          int[] codePoints = new int[random.nextInt(30)];
+          for (int j = 0;j < codePoints.length;j++) {
+            codePoints[j] = 'A' + random.nextInt(26);
+          }
+          buffer.insert(codePoints);
+          break;
+      }
+      int width = random.nextInt(3) == 0 ? 7 : 20;
+      int[] codePoints = buffer.toArray();
+      int offset = random.nextInt(codePoints.length + 1);
+      assertEquals(Helper.computePosition(codePoints, new Vector(0, 0), offset, width), buffer.getPosition(offset, width));
+      assertEquals(Helper.computePosition(codePoints, new Vector(0, 0), buffer.getCursor(), width), buffer.getCursorPosition(width));
+    }
+  }
+
   @Test
   public void testMoveCursor() {
     LineBuffer buffer = new LineBuffer();
@@ -229,7 +350,7 @@ public class LineBufferTest {
     assertEquals(new Vector(0, 2), buffer.getCursorPosition(1));
   }
 
-  // @Test
+  @Test
   public void testCursorPositionWithMultiCell1() {
     LineBuffer buffer = new LineBuffer();
     buffer.insert('한', 'b');
@@ -243,7 +364,7 @@ public class LineBufferTest {
     }
   }
 
-  // @Test
+  @Test
   public void testCursorPositionWithMultiCell2() {
     LineBuffer buffer = new LineBuffer();
     buffer.insert('a', '한');
@@ -257,6 +378,18 @@ public class LineBufferTest {
     }
   }
 
+  @Test
+  public void testCursorPositionAfterEditingWrappedChar() {
+    LineBuffer buffer = new LineBuffer();
+    buffer.insert('a', 'b', '\u4F60', 'c');
+    assertEquals(new Vector(0, 2), buffer.getCursorPosition(3));
+    buffer.delete(-1);
+    // The wide char starting the second row is replaced
+    buffer.delete(-1);
+    buffer.insert('x');
+    assertEquals(new Vector(0, 1), buffer.getCursorPosition(3));
+  }
+
   @Test
   public void testUpdate1() {
     TestTerminal screen = new TestTerminal();
@@ -340,4 +473,32 @@ public class LineBufferTest {
     buffer.update(to, screen, 2);
     screen.assertCodePoints("abcde").assertEmpty();
   }
+
+  @Test
+  public void testUpdateWideChar() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer buffer = new LineBuffer();
+    LineBuffer to = new LineBuffer();
+    to.insert('a', '\u4F60', 'b');
+    buffer.update(to, screen, 40);
+    screen.assertCodePoints("a\u4F60b").assertEmpty();
+    buffer.update(to, screen, 40);
+    screen.assertEmpty();
+    to.setCursor(1);
+    to.delete(1);
+    buffer.update(to, screen, 40);
+    screen.assertCodePoints("\b\b\bb\033[K\b").assertEmpty();
+  }
+
+  @Test
+  public void testUpdateWideCharWrap() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer buffer = new LineBuffer();
+    LineBuffer to = new LineBuffer();
+    to.insert('a', 'b', '\u4F60');
+    buffer.update(to, screen, 3);
+    // The remaining cell of the first row is blanked and the wide char is written on the next row
+    screen.assertCodePoints("ab \u4F60").assertEmpty();
+    assertEquals(new Vector(2, 1), to.getCursorPosition(3));
+  }
 }
@@ -80,6 +80,36 @@ public class ReadlineTest extends TestBase {
     assertEquals("A", line.get());
   }
 
+  @Test
+  public void testCoalesceSelfInsert() throws Exception {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    term.writeCount = 0;
+    term.read('A', 'B', 'C', 'D');
+    assertEquals(1, term.writeCount);
+    term.assertScreen("% ABCD");
+    term.assertAt(0, 6);
+    term.read('E', 8, 'F', 'G', '\r');
+    term.assertScreen("% ABCDFG");
+    assertEquals("ABCDFG", line.get());
+  }
+
+  @Test
+  public void testPaste() throws Exception {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    term.read('A');
+    term.read(27, '[', '2', '0', '0', '~', 'B', '\r', 'C', '\t', 'D', 27, '[', '2', '0', '1', '~');
+    assertNull(line.get());
+    term.assertScreen(
+        "% AB",
+        "CD");
+    term.assertAt(1, 2);
+    assertEquals(0, term.getBellCount());
+    term.read('\r');
+    assertEquals("AB\nCD", line.get());
+  }
+
   @Test
   public void testEscapeCR() {
     TestTerm term = new TestTerm(this);
@@ -367,6 +397,48 @@ public class ReadlineTest extends TestBase {
     assertEquals("ab", line.get());
   }
 
+  @Test
+  public void testWideChar() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    term.read('a', 0x1F600, '\u4F60', 'b');
+    assertEquals(0, term.getBellCount());
+    term.assertScreen("% a\uD83D\uDE00\u4F60b");
+    term.assertAt(0, 8);
+    term.read(BACKWARD_KEY);
+    term.read(BACKWARD_KEY);
+    term.assertAt(0, 5);
+    term.read(BACKWARD_DELETE_KEY);
+    term.assertScreen("% a\u4F60b");
+    term.assertAt(0, 3);
+    term.read('\r');
+    assertEquals("a\u4F60b", line.get());
+  }
+
+  @Test
+  public void testWideCharWrap() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    term.setWidth(5);
+    term.read('a', 'b', '\u4F60');
+    // The wide char does not fit at the end of the first row
+    term.assertScreen("% ab ", "\u4F60");
+    term.assertAt(1, 2);
+    term.read(BACKWARD_KEY);
+    term.read('c');
+    term.assertScreen("% abc", "\u4F60");
+    term.assertAt(1, 0);
+    term.read(BACKWARD_DELETE_KEY);
+    term.assertScreen("% ab ", "\u4F60");
+    term.read(BACKWARD_DELETE_KEY);
+    term.assertScreen("% a\u4F60", "");
+    term.assertAt(0, 3);
+    term.read(0x1F600);
+    term.assertScreen("% a\uD83D\uDE00", "\u4F60");
+    term.read('\r');
+    assertEquals("a\uD83D\uDE00\u4F60", line.get());
+  }
+
   @Test
   public void testEventHandler() {
     TestTerm term = new TestTerm(this);
@@ -38,6 +38,7 @@ import io.termd.core.tty.TtyConnectionSupport;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyOutputMode;
 import io.termd.core.util.Vector;
+import io.termd.core.util.Wcwidth;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -52,6 +53,9 @@ import java.util.concurrent.atomic.AtomicReference;
 */
 class TestTerm {
 
+  // The cell following a wide char
+  private static final int WIDE_CHAR_TAIL = -1;
+
   private TestBase readlineTest;
   private int[][] buffer = new int[10][];
   private int row;
@@ -60,9 +64,11 @@ class TestTerm {
   private int acc = -1;
   private int bell;
   private int width = 40;
+  int writeCount;
   Consumer<int[]> writeHandler = new Consumer<int[]>() {
     @Override
     public void accept(int[] event) {
+      writeCount++;
       for (int i : event) {
         if (buffer[row] == null) {
           buffer[row] = new int[100];
@@ -70,8 +76,23 @@ class TestTerm {
         switch (status) {
           case 0:
             if (i >= 32) {
-              buffer[row][cursor] = i;
-              forward();
+              if (Wcwidth.of(i) == 2) {
+                if (cursor == width - 1) {
+                  // A wide char does not fit at the end of the row
+                  cursor = 0;
+                  row++;
+                  if (buffer[row] == null) {
+                    buffer[row] = new int[100];
+                  }
+                }
+                put(i);
+                forward();
+                put(WIDE_CHAR_TAIL);
+                forward();
+              } else {
+                put(i);
+                forward();
+              }
             } else {
               switch (i) {
                 case 7:
@@ -132,6 +153,9 @@ class TestTerm {
                   if (acc != -1) {
                     throw new UnsupportedOperationException("Not yet implemented");
                   } else {
+                    if (buffer[row][cursor] == WIDE_CHAR_TAIL) {
+                      buffer[row][cursor - 1] = ' ';
+                    }
                     for (int j = cursor;j < buffer[row].length;j++) {
                       buffer[row][j] = 0;
                     }
@@ -151,6 +175,19 @@ class TestTerm {
       }
     }
 
+    /**
+     * Put a char in the cell at the cursor, a wide char overwritten by half is blanked like terminals do.
+     */
+    private void put(int c) {
+      int[] cells = buffer[row];
+      if (cells[cursor] == WIDE_CHAR_TAIL) {
+        cells[cursor - 1] = ' ';
+      } else if (cursor + 1 < cells.length && cells[cursor + 1] == WIDE_CHAR_TAIL) {
+        cells[cursor + 1] = ' ';
+      }
+      cells[cursor] = c;
+    }
+
     private void backward() {
       if (cursor > 0) {
         cursor--;
@@ -367,6 +404,9 @@ class TestTerm {
       }
       StringBuilder line = new StringBuilder();
       for (int codePoint : row) {
+        if (codePoint == WIDE_CHAR_TAIL) {
+          continue;
+        }
         if (codePoint < 32) {
           break;
         }
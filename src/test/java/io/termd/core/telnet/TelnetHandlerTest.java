@@ -16,7 +16,9 @@
  */
 package io.termd.core.telnet;
 
+import io.netty.buffer.ByteBuf;
 import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
 import io.termd.core.function.Supplier;
 import org.apache.commons.net.telnet.EchoOptionHandler;
 import org.apache.commons.net.telnet.SimpleOptionHandler;
@@ -404,6 +406,27 @@ public abstract class TelnetHandlerTest extends TelnetTestBase {
 
   @Test
   public void testSendBinary() throws Exception {
+    testSendBinary(new Consumer<TelnetConnection>() {
+      @Override
+      public void accept(TelnetConnection conn) {
+        conn.write(new byte[]{'h', 'e', 'l', 'l', 'o', -1});
+      }
+    });
+  }
+
+  @Test
+  public void testSendBinaryByteBuf() throws Exception {
+    testSendBinary(new Consumer<TelnetConnection>() {
+      @Override
+      public void accept(TelnetConnection conn) {
+        ByteBuf buf = conn.alloc().buffer();
+        buf.writeBytes(new byte[]{'h', 'e', 'l', 'l', 'o', -1});
+        conn.write(buf);
+      }
+    });
+  }
+
+  private void testSendBinary(final Consumer<TelnetConnection> sender) throws Exception {
     final CountDownLatch latch = new CountDownLatch(1);
     server.start(new Supplier<TelnetHandler>() {
       @Override
@@ -420,7 +443,7 @@ public abstract class TelnetHandlerTest extends TelnetTestBase {
           @Override
           protected void onSendBinary(boolean binary) {
             if (binary) {
-              conn.write(new byte[]{'h', 'e', 'l', 'l', 'o', -1});
+              sender.accept(conn);
               latch.countDown();
             } else {
               fail("Was not expecting a don't for binary option");
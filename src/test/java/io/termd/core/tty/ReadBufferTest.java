@@ -6,6 +6,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
 
@@ -101,17 +103,73 @@ public class ReadBufferTest extends TestBase {
     assertEquals(0, reads.size());
     assertEquals(1, commands.size());
     commands.poll().run();
-    assertEquals(1, reads.size());
-    assertEquals(1, commands.size());
+    assertEquals(2, reads.size());
+    assertEquals(0, commands.size());
     assertEquals(reads.get(0), new int[]{'f', 'o', 'o'});
+    assertEquals(reads.get(1), new int[]{'b', 'a', 'r'});
     buf.accept(new int[]{'j', 'u', 'u'});
     assertEquals(3, reads.size());
-    assertEquals(1, commands.size());
-    assertEquals(reads.get(1), new int[]{'b', 'a', 'r'});
+    assertEquals(0, commands.size());
     assertEquals(reads.get(2), new int[]{'j', 'u', 'u'});
+  }
+
+  @Test
+  public void testPendingAccept() throws Exception {
+    buf.accept(new int[]{'f', 'o', 'o'});
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+      }
+    });
+    buf.accept(new int[]{'b', 'a', 'r'});
+    assertEquals(2, reads.size());
+    assertEquals(reads.get(0), new int[]{'f', 'o', 'o'});
+    assertEquals(reads.get(1), new int[]{'b', 'a', 'r'});
+    assertEquals(1, commands.size());
     commands.poll().run();
-    assertEquals(3, reads.size());
-    assertEquals(0, commands.size());
+    assertEquals(2, reads.size());
+  }
+
+  @Test
+  public void testWatermarks() throws Exception {
+    final ArrayList<Boolean> pauses = new ArrayList<Boolean>();
+    buf = new ReadBuffer(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        commands.add(command);
+      }
+    }, 3, 6);
+    buf.setPauseHandler(new Consumer<Boolean>() {
+      @Override
+      public void accept(Boolean paused) {
+        pauses.add(paused);
+      }
+    });
+    buf.accept(new int[]{'a', 'b', 'c'});
+    buf.accept(new int[]{'d', 'e'});
+    assertEquals(5, buf.size());
+    assertEquals(0, pauses.size());
+    buf.accept(new int[]{'f'});
+    assertEquals(6, buf.size());
+    assertTrue(buf.isPaused());
+    assertEquals(Collections.singletonList(true), pauses);
+    buf.accept(new int[]{'g', 'h'});
+    assertEquals(1, pauses.size());
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+        if (reads.size() == 2) {
+          buf.setReadHandler(null);
+        }
+      }
+    });
+    commands.poll().run();
+    assertEquals(2, reads.size());
+    assertEquals(3, buf.size());
+    assertFalse(buf.isPaused());
+    assertEquals(Arrays.asList(true, false), pauses);
   }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link TtyEventDecoder} on a pasted buffer where every other code point is a Ctrl-C, the time
+ * per operation should grow linearly with the size.
+ *
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main TtyEventDecoderBenchmark}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TtyEventDecoderBenchmark {
+
+  @Param({"1024", "16384"})
+  public int size;
+
+  private int[] data;
+  private TtyEventDecoder decoder;
+
+  @Setup
+  public void setup(final Blackhole blackhole) {
+    data = new int[size];
+    for (int i = 0;i < size;i++) {
+      data[i] = i % 2 == 0 ? 3 : 'a';
+    }
+    decoder = new TtyEventDecoder(3, 26, 4);
+    decoder.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] codePoints) {
+        blackhole.consume(codePoints);
+      }
+    });
+    decoder.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
+      @Override
+      public void accept(TtyEvent event, Integer key) {
+        blackhole.consume(event);
+      }
+    });
+  }
+
+  @Benchmark
+  public void decode() {
+    decoder.accept(data);
+  }
+}
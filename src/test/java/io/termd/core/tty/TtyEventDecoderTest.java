@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.TestBase;
+import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
+import io.termd.core.util.Helper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyEventDecoderTest extends TestBase {
+
+  private TtyEventDecoder decoder;
+  private List<String> received;
+
+  @Before
+  public void setUp() {
+    received = new ArrayList<String>();
+    decoder = new TtyEventDecoder(3, 26, 4);
+    decoder.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] codePoints) {
+        received.add(Helper.fromCodePoints(codePoints));
+      }
+    });
+    decoder.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
+      @Override
+      public void accept(TtyEvent event, Integer key) {
+        received.add(event.name());
+      }
+    });
+  }
+
+  @Test
+  public void testNoEvent() {
+    int[] data = {'a', 'b'};
+    final List<int[]> reads = new ArrayList<int[]>();
+    decoder.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] codePoints) {
+        reads.add(codePoints);
+      }
+    });
+    decoder.accept(data);
+    assertEquals(1, reads.size());
+    assertTrue(data == reads.get(0));
+  }
+
+  @Test
+  public void testEvents() {
+    decoder.accept(new int[]{'a', 3, 'b', 'c', 26, 4, 'd'});
+    assertEquals(Arrays.asList("a", "INTR", "bc", "SUSP", "EOF", "d"), received);
+  }
+
+  @Test
+  public void testOnlyEvents() {
+    decoder.accept(new int[]{3, 3, 3});
+    assertEquals(Arrays.asList("INTR", "INTR", "INTR"), received);
+  }
+
+  @Test
+  public void testSlice() {
+    int[] data = {'x', 'a', 3, 'b', 'x'};
+    decoder.accept(data, 1, 3);
+    data[1] = 'y';
+    data[3] = 'y';
+    assertEquals(Arrays.asList("a", "INTR", "b"), received);
+  }
+
+  @Test
+  public void testNoEventHandler() {
+    decoder.setEventHandler(null);
+    decoder.accept(new int[]{'a', 3, 'b'});
+    assertEquals(Collections.singletonList("a\u0003b"), received);
+  }
+
+  @Test
+  public void testRemoveEventHandler() {
+    decoder.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
+      @Override
+      public void accept(TtyEvent event, Integer key) {
+        received.add(event.name());
+        decoder.setEventHandler(null);
+      }
+    });
+    decoder.accept(new int[]{'a', 3, 'b', 3, 'c'});
+    assertEquals(Arrays.asList("a", "INTR", "b\u0003c"), received);
+  }
+}
@@ -40,9 +40,87 @@ public class TtyOutputModeTest {
     assertOutput("a\r\nb\r\nc", "a\nb\nc");
   }
 
-  private void assertOutput(String expected, String actual) {
+  @Test
+  public void testSingleOutputCall() {
     ReadHandler readHandler = new ReadHandler();
     TtyOutputMode out = new TtyOutputMode(readHandler);
+    out.accept(Helper.toCodePoints("a\nb\nc\n"));
+    assertEquals(1, readHandler.calls);
+    assertEquals("a\r\nb\r\nc\r\n", Helper.fromCodePoints(readHandler.result()));
+  }
+
+  @Test
+  public void testPassThrough() {
+    final int[][] received = new int[1][];
+    TtyOutputMode out = new TtyOutputMode(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] data) {
+        received[0] = data;
+      }
+    });
+    int[] data = Helper.toCodePoints("abc\r");
+    out.accept(data);
+    assertTrue(data == received[0]);
+  }
+
+  @Test
+  public void testNoOnlcr() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler).setOnlcr(false);
+    assertOutput("a\nb", "a\nb", out, readHandler);
+  }
+
+  @Test
+  public void testOcrnl() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler).setOnlcr(false).setOcrnl(true);
+    assertOutput("a\nb", "a\rb", out, readHandler);
+    readHandler = new ReadHandler();
+    out = new TtyOutputMode(readHandler).setOcrnl(true);
+    // The translated newline is not translated again
+    assertOutput("a\nb\r\n", "a\rb\n", out, readHandler);
+  }
+
+  @Test
+  public void testOnocr() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler).setOnocr(true);
+    assertOutput("a\r", "\ra\r\r", out, readHandler);
+    readHandler = new ReadHandler();
+    out = new TtyOutputMode(readHandler).setOnocr(true);
+    assertOutput("\r\n", "\n\r", out, readHandler);
+  }
+
+  @Test
+  public void testExpandTabs() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler).setExpandTabs(true);
+    assertOutput("        a       bc      \r\n        ", "\ta\tbc\t\n\t", out, readHandler);
+    readHandler = new ReadHandler();
+    out = new TtyOutputMode(readHandler).setExpandTabs(true);
+    assertOutput("abcdefg h", "abcdefg\th", out, readHandler);
+    readHandler = new ReadHandler();
+    out = new TtyOutputMode(readHandler).setExpandTabs(true);
+    assertOutput("abc\b\b       c", "abc\b\b\tc", out, readHandler);
+  }
+
+  @Test
+  public void testColumnAcrossCalls() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler).setExpandTabs(true);
+    out.accept(Helper.toCodePoints("abc"));
+    assertEquals(3, out.column());
+    out.accept(Helper.toCodePoints("\t"));
+    assertEquals(8, out.column());
+    assertEquals("abc     ", Helper.fromCodePoints(readHandler.result()));
+  }
+
+  private void assertOutput(String expected, String actual) {
+    ReadHandler readHandler = new ReadHandler();
+    assertOutput(expected, actual, new TtyOutputMode(readHandler), readHandler);
+  }
+
+  private void assertOutput(String expected, String actual, TtyOutputMode out, ReadHandler readHandler) {
     out.accept(Helper.toCodePoints(actual));
     String result = Helper.fromCodePoints(readHandler.result());
     assertEquals(expected, result);
@@ -50,9 +128,11 @@ public class TtyOutputModeTest {
 
   private class ReadHandler implements Consumer<int[]> {
     List<Integer> result = new LinkedList<Integer>();
+    int calls;
 
     @Override
     public void accept(int[] ints) {
+        calls++;
         for (int i : ints) {
           result.add(i);
         }
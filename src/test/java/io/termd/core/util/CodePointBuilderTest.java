@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class CodePointBuilderTest {
+
+  @Test
+  public void testAppend() {
+    CodePointBuilder builder = new CodePointBuilder(1);
+    builder.append('a').append('b', 'c').append(new int[]{'x', 'd', 'y'}, 1, 1);
+    builder.accept(new int[]{'e', 'f'});
+    assertEquals(6, builder.length());
+    assertEquals('d', builder.codePointAt(3));
+    assertEquals("abcdef", builder.toString());
+    assertTrue(Arrays.equals(new int[]{'a', 'b', 'c', 'd', 'e', 'f'}, builder.toArray()));
+  }
+
+  @Test
+  public void testClear() {
+    CodePointBuilder builder = new CodePointBuilder();
+    builder.append('a', 'b');
+    builder.clear();
+    assertEquals(0, builder.length());
+    assertEquals(0, builder.toArray().length);
+    builder.append(0x1F600);
+    assertEquals(1, builder.length());
+    assertEquals(new String(Character.toChars(0x1F600)), builder.toString());
+    try {
+      builder.codePointAt(1);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  @Test
+  public void testAppendCharSequence() {
+    CodePointBuilder builder = new CodePointBuilder(1);
+    builder.append("a\uD83D\uDE00b");
+    assertTrue(Arrays.equals(new int[]{'a', 0x1F600, 'b'}, builder.toArray()));
+  }
+
+  @Test
+  public void testRemoveLast() {
+    CodePointBuilder builder = new CodePointBuilder();
+    builder.append('a', 'b');
+    assertEquals('b', builder.removeLast());
+    assertEquals("a", builder.toString());
+    assertEquals('a', builder.removeLast());
+    try {
+      builder.removeLast();
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+}
@@ -35,6 +35,14 @@ public class HelperTest {
     assertLongestCommonPrefix(new int[]{0,1}, new int[]{0,1,2,4}, new int[]{0,1,2,3}, new int[]{0,1,3});
   }
 
+  @Test
+  public void testToCodePoints() {
+    assertEquals(0, Helper.toCodePoints("").length);
+    assertTrue(Arrays.equals(new int[]{'a', 0x1F600, 'b'}, Helper.toCodePoints("a\uD83D\uDE00b")));
+    // An unpaired surrogate is a code point
+    assertTrue(Arrays.equals(new int[]{0xD83D, 'b'}, Helper.toCodePoints("\uD83Db")));
+  }
+
   private void assertLongestCommonPrefix(int[] expected, int[]... tests) {
     assertTrue(Arrays.equals(expected, Helper.findLongestCommonPrefix(Arrays.asList(tests))));
   }
@@ -35,4 +35,24 @@ public class WcwidthTest {
     assertEquals(0, Wcwidth.of('\u0301'));
     assertEquals(1, Wcwidth.of('\u09C0'));
   }
+
+  @Test
+  public void testUnicode() {
+    assertEquals(2, Wcwidth.of(0x1F600)); // Grinning face
+    assertEquals(2, Wcwidth.of(0x231A)); // Watch
+    assertEquals(1, Wcwidth.of(0x2764)); // Heavy black heart, text presentation by default
+    assertEquals(0, Wcwidth.of(0x200D)); // Zero width joiner
+    assertEquals(0, Wcwidth.of(0xFE0F)); // Variation selector 16
+    assertEquals(2, Wcwidth.of(0x1F3FD)); // Emoji modifier
+    assertEquals(1, Wcwidth.of(0x00AD)); // Soft hyphen
+    assertEquals(0, Wcwidth.of(0x302A)); // Combining mark of the CJK symbols
+    assertEquals(2, Wcwidth.of(0x3000)); // Ideographic space
+    assertEquals(2, Wcwidth.of(0x2FFFD)); // Unassigned in the supplementary ideographic plane
+    assertEquals(2, Wcwidth.of(0x20000));
+    assertEquals(2, Wcwidth.of(0x31350)); // Unassigned in the tertiary ideographic plane
+    assertEquals(0, Wcwidth.of(0xE0041)); // Tag
+    assertEquals(1, Wcwidth.of(0x10FFFF));
+    assertEquals(-1, Wcwidth.of(0x9F));
+    assertEquals(1, Wcwidth.of(0xA0));
+  }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class WriteBatcherTest {
+
+  private final AtomicInteger flushes = new AtomicInteger();
+  private final ArrayBlockingQueue<Integer> received = new ArrayBlockingQueue<Integer>(1000);
+  private DefaultEventLoopGroup group;
+  private Channel server;
+  private Channel channel;
+  private WriteBatcher batcher;
+
+  @Before
+  public void before() throws Exception {
+    group = new DefaultEventLoopGroup(1);
+    LocalAddress address = new LocalAddress("write-batcher");
+    server = new ServerBootstrap().group(group).channel(LocalServerChannel.class).childHandler(new ChannelInboundHandlerAdapter() {
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ByteBuf buf = (ByteBuf) msg;
+        while (buf.isReadable()) {
+          received.add((int) buf.readByte());
+        }
+        buf.release();
+      }
+    }).bind(address).sync().channel();
+    final ChannelInboundHandlerAdapter last = new ChannelInboundHandlerAdapter();
+    channel = new Bootstrap().group(group).channel(LocalChannel.class).handler(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(Channel ch) {
+        ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+          @Override
+          public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes.incrementAndGet();
+            super.flush(ctx);
+          }
+        }, last);
+      }
+    }).connect(address).sync().channel();
+    batcher = new WriteBatcher(channel.pipeline().context(last));
+  }
+
+  @After
+  public void after() throws Exception {
+    channel.close().sync();
+    server.close().sync();
+    group.shutdownGracefully(0, 10, TimeUnit.SECONDS).sync();
+  }
+
+  private <T> T onEventLoop(Callable<T> task) throws Exception {
+    return channel.eventLoop().submit(task).get(10, TimeUnit.SECONDS);
+  }
+
+  private void assertReceived(int... expected) throws Exception {
+    for (int b : expected) {
+      assertEquals((Integer) b, received.poll(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    onEventLoop(new Callable<Void>() {
+      @Override
+      public Void call() {
+        batcher.write(Unpooled.wrappedBuffer(new byte[]{0}));
+        batcher.write(Unpooled.wrappedBuffer(new byte[]{1}));
+        batcher.write(Unpooled.wrappedBuffer(new byte[]{2}));
+        assertEquals(0, flushes.get());
+        return null;
+      }
+    });
+    assertReceived(0, 1, 2);
+    assertEquals(1, flushes.get());
+  }
+
+  @Test
+  public void testOrder() throws Exception {
+    batcher.write(Unpooled.wrappedBuffer(new byte[]{0}));
+    onEventLoop(new Callable<Void>() {
+      @Override
+      public Void call() {
+        batcher.write(Unpooled.wrappedBuffer(new byte[]{1}));
+        return null;
+      }
+    });
+    batcher.write(Unpooled.wrappedBuffer(new byte[]{2}));
+    assertReceived(0, 1, 2);
+  }
+
+  @Test
+  public void testFlush() throws Exception {
+    onEventLoop(new Callable<Void>() {
+      @Override
+      public Void call() {
+        batcher.write(Unpooled.wrappedBuffer(new byte[]{0}));
+        batcher.flush();
+        assertEquals(1, flushes.get());
+        return null;
+      }
+    });
+    assertReceived(0);
+    onEventLoop(new Callable<Void>() {
+      @Override
+      public Void call() {
+        assertEquals(1, flushes.get());
+        return null;
+      }
+    });
+  }
+
+  @Test
+  public void testWritability() throws Exception {
+    // The pending size of a message includes the outbound buffer entry overhead
+    channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(256, 512));
+    onEventLoop(new Callable<Void>() {
+      @Override
+      public Void call() {
+        batcher.write(Unpooled.wrappedBuffer(new byte[200]));
+        assertTrue(channel.isWritable());
+        assertEquals(0, flushes.get());
+        // The second write exceeds the high water mark and is flushed immediately
+        batcher.write(Unpooled.wrappedBuffer(new byte[200]));
+        assertEquals(1, flushes.get());
+        return null;
+      }
+    });
+    for (int i = 0;i < 400;i++) {
+      assertReceived(0);
+    }
+    assertEquals(1, flushes.get());
+  }
+
+  @Test
+  public void testPromise() throws Exception {
+    ChannelPromise promise = channel.newPromise();
+    batcher.write(Unpooled.wrappedBuffer(new byte[]{0}), promise);
+    assertTrue(promise.await(10, TimeUnit.SECONDS));
+    assertTrue(promise.isSuccess());
+    assertReceived(0);
+  }
+}